@@ -0,0 +1,57 @@
+package com.pantrypilot.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class MatchingConfig {
+
+    /**
+     * Dedicated pool for scoring catalog partitions in parallel, separate from the
+     * web request threads and the common pool. 0 means one thread per core.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool matchingPool(@Value("${matching.parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(threads);
+    }
+
+    /**
+     * Runs streamed matches off the request thread so the SSE response can be
+     * returned right away. Bounded, and rejects when the queue is full.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService matchStreamExecutor(@Value("${matching.stream-threads:16}") int threads,
+            @Value("${matching.stream-queue:64}") int queueSize) {
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueSize));
+    }
+
+    /**
+     * Background AI generations that top up sessions before they run dry. Small
+     * and bounded: prefetches are dropped rather than queued without limit.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService aiPrefetchExecutor(@Value("${matching.prefetch-threads:4}") int threads,
+            @Value("${matching.prefetch-queue:32}") int queueSize) {
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueSize));
+    }
+
+    /**
+     * Individual AI attempts (primary, hedged and parallel) for one request.
+     * Kept apart from the prefetch pool, whose tasks wait on these. Concurrency
+     * against Gemini itself is bounded by the client's bulkhead.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService aiAttemptExecutor(@Value("${ai.attempt-threads:16}") int threads) {
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    }
+}
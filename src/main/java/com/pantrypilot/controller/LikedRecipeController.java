@@ -3,6 +3,7 @@ package com.pantrypilot.controller;
 import com.pantrypilot.model.Recipe;
 import com.pantrypilot.model.User;
 import com.pantrypilot.service.LikedRecipeService;
+import com.pantrypilot.service.RecipeWriteBehindQueue;
 import com.pantrypilot.repository.RecipeRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -18,6 +19,7 @@ public class LikedRecipeController {
 
     private final LikedRecipeService likedRecipeService;
     private final RecipeRepository recipeRepository;
+    private final RecipeWriteBehindQueue writeBehindQueue;
 
     // Utility method to get authenticated user
     private User getCurrentUser() {
@@ -27,8 +29,7 @@ public class LikedRecipeController {
     @PostMapping("/{recipeId}")
     public ResponseEntity<String> likeRecipe(@PathVariable Long recipeId) {
         User user = getCurrentUser();
-        Recipe recipe = recipeRepository.findById(recipeId)
-                .orElseThrow(() -> new RuntimeException("Recipe not found"));
+        Recipe recipe = findRecipe(recipeId);
 
         likedRecipeService.likeRecipe(user, recipe);
         return ResponseEntity.ok("Recipe liked successfully");
@@ -38,13 +39,20 @@ public class LikedRecipeController {
     public ResponseEntity<String> unlikeRecipe(@PathVariable Long recipeId) {
         User user = getCurrentUser();
         System.out.println("DELETE request by user: " + user.getEmail() + " for recipe: " + recipeId);
-        Recipe recipe = recipeRepository.findById(recipeId)
-                .orElseThrow(() -> new RuntimeException("Recipe not found"));
+        Recipe recipe = findRecipe(recipeId);
 
         likedRecipeService.unlikeRecipe(user, recipe);
         return ResponseEntity.ok("Recipe unliked successfully");
     }
 
+    // An AI recipe still in the write-behind queue is waited for, briefly
+    private Recipe findRecipe(Long recipeId) {
+        if (!writeBehindQueue.awaitWritten(recipeId))
+            throw new RuntimeException("Recipe is still being saved, try again");
+        return recipeRepository.findById(recipeId)
+                .orElseThrow(() -> new RuntimeException("Recipe not found"));
+    }
+
     @GetMapping
     public ResponseEntity<List<Recipe>> getLikedRecipes() {
         User user = getCurrentUser();
@@ -5,6 +5,7 @@ import com.pantrypilot.model.PantryIngredient;
 import com.pantrypilot.model.Recipe;
 import com.pantrypilot.service.IngredientImageService;
 import com.pantrypilot.service.RecipeService;
+import com.pantrypilot.service.RecipeWriteBehindQueue;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -17,10 +18,13 @@ public class RecipeController {
 
     private final RecipeService recipeService;
     private final IngredientImageService ingredientImageService;
+    private final RecipeWriteBehindQueue writeBehindQueue;
 
-    public RecipeController(RecipeService recipeService, IngredientImageService ingredientImageService) {
+    public RecipeController(RecipeService recipeService, IngredientImageService ingredientImageService,
+            RecipeWriteBehindQueue writeBehindQueue) {
         this.recipeService = recipeService;
         this.ingredientImageService = ingredientImageService;
+        this.writeBehindQueue = writeBehindQueue;
     }
 
     // Add a new recipe
@@ -51,7 +55,10 @@ public class RecipeController {
     // Get a recipe by ID
     @GetMapping("/{id}")
     public ResponseEntity<RecipeDTO> getRecipeById(@PathVariable Long id) {
-        Recipe recipe = recipeService.getRecipeById(id);
+        // AI recipes not written yet are served from the write-behind queue
+        Recipe recipe = writeBehindQueue.getPending(id);
+        if (recipe == null)
+            recipe = recipeService.getRecipeById(id);
         if (recipe == null) {
             return ResponseEntity.notFound().build();
         }
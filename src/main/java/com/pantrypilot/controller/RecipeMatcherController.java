@@ -2,12 +2,20 @@ package com.pantrypilot.controller;
 
 import com.pantrypilot.dto.RecipeDTO;
 import com.pantrypilot.model.PantryIngredient;
+import com.pantrypilot.service.MatchStreamListener;
 import com.pantrypilot.service.RecipeMatcherService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/matching-recipes")
@@ -15,8 +23,10 @@ import java.util.*;
 public class RecipeMatcherController {
 
     private final RecipeMatcherService recipeMatcherService;
+    private final ExecutorService matchStreamExecutor;
 
     private static final int BATCH_SIZE = 3;
+    private static final long STREAM_TIMEOUT_MS = 120_000;
 
     // -------------------- DTO for frontend POST --------------------
     public static class MatchRequest {
@@ -25,6 +35,12 @@ public class RecipeMatcherController {
         public int maxPrepTime;
     }
 
+    // -------------------- DTO for pantry edits --------------------
+    public static class PantryDeltaRequest {
+        public List<PantryIngredient> add;
+        public List<String> remove;
+    }
+
     // -------------------- POST endpoint (first call) --------------------
     // -------------------- POST endpoint (first call) --------------------
 @PostMapping
@@ -59,6 +75,71 @@ public ResponseEntity<Map<String, Object>> getMatchingRecipes(@RequestBody Match
     }
 }
 
+// -------------------- POST streaming variant (SSE) --------------------
+// Events: token, recipes (DB matches), recipe (one AI recipe), image, done, error
+@PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+public SseEmitter streamMatchingRecipes(@RequestBody MatchRequest request) {
+    List<PantryIngredient> pantryIngredients = request.ingredients != null ? request.ingredients : Collections.emptyList();
+    SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+
+    try {
+        matchStreamExecutor.execute(() -> recipeMatcherService.streamMatchingRecipes(
+                pantryIngredients, request.minPrepTime, request.maxPrepTime, BATCH_SIZE, new SseMatchListener(emitter)));
+    } catch (RejectedExecutionException e) {
+        emitter.completeWithError(e);
+    }
+    return emitter;
+}
+
+private static class SseMatchListener implements MatchStreamListener {
+    private final SseEmitter emitter;
+
+    SseMatchListener(SseEmitter emitter) {
+        this.emitter = emitter;
+    }
+
+    private void send(String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the match still finishes and fills the session
+        }
+    }
+
+    @Override
+    public void onToken(String token) {
+        send("token", Map.of("token", token));
+    }
+
+    @Override
+    public void onDbRecipes(List<RecipeDTO> recipes) {
+        send("recipes", recipes);
+    }
+
+    @Override
+    public void onAiRecipe(RecipeDTO recipe) {
+        send("recipe", recipe);
+    }
+
+    @Override
+    public void onImage(Long recipeId, String ingredientName, String imageUrl) {
+        send("image", Map.of("recipeId", recipeId, "ingredientName", Objects.toString(ingredientName, ""),
+                "imageUrl", imageUrl));
+    }
+
+    @Override
+    public void onComplete() {
+        send("done", Map.of());
+        emitter.complete();
+    }
+
+    @Override
+    public void onError(Exception e) {
+        send("error", Map.of("error", "Failed to match recipes: " + String.valueOf(e.getMessage())));
+        emitter.complete();
+    }
+}
+
 // -------------------- GET next batch (subsequent calls) --------------------
 @GetMapping("/{token}")
 public ResponseEntity<Map<String, Object>> getNextRecipes(@PathVariable String token) {
@@ -90,4 +171,16 @@ public ResponseEntity<Map<String, Object>> getNextRecipes(@PathVariable String t
     }
 }
 
+// -------------------- PATCH pantry delta (instead of re-POSTing the pantry) --------------------
+@PatchMapping("/{token}")
+public ResponseEntity<Map<String, Object>> updatePantry(@PathVariable String token,
+                                                        @RequestBody PantryDeltaRequest request) {
+    if (!recipeMatcherService.applyPantryDelta(token, request.add, request.remove)) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                "error", "Unknown or expired token: " + token
+        ));
+    }
+    return getNextRecipes(token);
+}
+
 }
@@ -0,0 +1,37 @@
+package com.pantrypilot.dto;
+
+import com.pantrypilot.util.IngredientNames;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything the AI prompt is built from, normalized so that two requests
+ * producing the same prompt are equal. Used to share one in-flight Gemini call
+ * between identical concurrent requests.
+ */
+@Data
+@AllArgsConstructor
+public class AiRecipeRequest {
+    private List<String> ingredients; // "name|quantity|unit", sorted
+    private int minPrepTime;
+    private int maxPrepTime;
+    private int count;
+    private boolean excludesTitles;
+    private int attempt; // hedged/parallel attempts of one caller must not collapse into one call
+
+    public static AiRecipeRequest of(List<Map<String, Object>> ingredients, int minPrepTime, int maxPrepTime,
+            int count, boolean excludesTitles, int attempt) {
+        List<String> keys = new ArrayList<>();
+        for (Map<String, Object> ing : ingredients) {
+            keys.add(IngredientNames.normalize(String.valueOf(ing.get("ingredientName")))
+                    + "|" + ing.get("quantity")
+                    + "|" + IngredientNames.normalize(String.valueOf(ing.get("unit"))));
+        }
+        keys.sort(null);
+        return new AiRecipeRequest(keys, minPrepTime, maxPrepTime, count, excludesTitles, attempt);
+    }
+}
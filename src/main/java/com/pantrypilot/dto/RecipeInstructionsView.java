@@ -0,0 +1,11 @@
+package com.pantrypilot.dto;
+
+/**
+ * Projection of just a recipe's instructions, fetched once the recipe is
+ * actually returned to the user.
+ */
+public interface RecipeInstructionsView {
+    Long getId();
+
+    String getInstructions();
+}
@@ -0,0 +1,20 @@
+package com.pantrypilot.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * One flat (recipe, ingredient) row used to build RecipeDTOs without loading
+ * the recipe's instructions column.
+ */
+@Data
+@AllArgsConstructor
+public class RecipeSummaryRow {
+    private Long recipeId;
+    private String title;
+    private int prepTime;
+    private Long ingredientId;
+    private String ingredientName;
+    private Double quantity;
+    private String unit;
+}
@@ -1,5 +1,7 @@
 package com.pantrypilot.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.pantrypilot.util.Unit;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -22,4 +24,32 @@ public class PantryIngredient {
 
     @Column(name = "unit")
     private String unit;      
+
+    /** Parsed from {@link #unit} whenever quantity or unit change. */
+    @Transient
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    private Unit parsedUnit = Unit.parse(null);
+
+    /** Quantity in the base unit of {@link #parsedUnit}'s dimension. */
+    @Transient
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    private double baseQuantity;
+
+    public void setQuantity(double quantity) {
+        this.quantity = quantity;
+        this.baseQuantity = parsedUnit.toBase(quantity);
+    }
+
+    public void setUnit(String unit) {
+        this.unit = unit;
+        parseUnit();
+    }
+
+    @PostLoad
+    private void parseUnit() {
+        this.parsedUnit = Unit.parse(unit);
+        this.baseQuantity = parsedUnit.toBase(quantity);
+    }
 }
@@ -9,7 +9,7 @@ import java.util.List;
 @Entity
 @Table(
     indexes = {
-        @Index(name = "idx_prep_time", columnList = "prep_time")
+        @Index(name = "idx_recipe_prep_time_id", columnList = "prep_time, id")
     }
 )
 @Data
@@ -17,8 +17,10 @@ import java.util.List;
 @AllArgsConstructor
 public class Recipe {
 
+    // Pooled sequence IDs (blocks of 50) so Hibernate can batch INSERTs; IDENTITY can't
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recipe_seq")
+    @SequenceGenerator(name = "recipe_seq", sequenceName = "recipe_seq", allocationSize = 50)
     private Long id;
 
     @Column(unique = true)
@@ -3,19 +3,33 @@ package com.pantrypilot.model;
 import jakarta.persistence.*;
 import lombok.*;
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.pantrypilot.util.IngredientNames;
+import com.pantrypilot.util.Unit;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_recipe_ingredient_name_recipe", columnList = "normalized_name, recipe_id"),
+        @Index(name = "idx_recipe_ingredient_recipe", columnList = "recipe_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class RecipeIngredient {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recipe_ingredient_seq")
+    @SequenceGenerator(name = "recipe_ingredient_seq", sequenceName = "recipe_ingredient_seq", allocationSize = 50)
     private Long id;
 
     private String ingredientName;
 
+    /** {@link IngredientNames#key} of ingredientName, filled on write for indexed lookups. */
+    @Column(name = "normalized_name")
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    private String normalizedName;
+
     private double quantity;
 
     private String unit;
@@ -24,4 +38,45 @@ public class RecipeIngredient {
      @JoinColumn(name = "recipe_id")
      @JsonBackReference
      private Recipe recipe;
+
+    /** Parsed from {@link #unit} whenever quantity or unit change. */
+    @Transient
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    private Unit parsedUnit = Unit.parse(null);
+
+    /** Persisted so coverage can be checked in SQL; filled on write. */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "unit_dimension", length = 16)
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    private Unit.Dimension unitDimension = parsedUnit.getDimension();
+
+    /** Quantity in the base unit of {@link #parsedUnit}'s dimension. */
+    @Column(name = "base_quantity")
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    private double baseQuantity;
+
+    public void setIngredientName(String ingredientName) {
+        this.ingredientName = ingredientName;
+        this.normalizedName = ingredientName != null ? IngredientNames.key(ingredientName) : null;
+    }
+
+    public void setQuantity(double quantity) {
+        this.quantity = quantity;
+        this.baseQuantity = parsedUnit.toBase(quantity);
+    }
+
+    public void setUnit(String unit) {
+        this.unit = unit;
+        parseUnit();
+    }
+
+    @PostLoad
+    private void parseUnit() {
+        this.parsedUnit = Unit.parse(unit);
+        this.unitDimension = parsedUnit.getDimension();
+        this.baseQuantity = parsedUnit.toBase(quantity);
+    }
 }
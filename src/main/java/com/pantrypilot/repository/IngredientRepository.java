@@ -6,5 +6,6 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import java.util.Optional;
 
 public interface IngredientRepository extends JpaRepository<Ingredient, Long> {
-    Optional<Ingredient> findByNameIgnoreCase(String name);
+    // Names are stored normalized (IngredientNames.normalize), so this hits the unique index
+    Optional<Ingredient> findByName(String name);
 }
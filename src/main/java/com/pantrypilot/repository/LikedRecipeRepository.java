@@ -3,6 +3,7 @@ package com.pantrypilot.repository;
 import com.pantrypilot.model.LikedRecipe;
 import com.pantrypilot.model.Recipe;
 import com.pantrypilot.model.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -12,7 +13,8 @@ import java.util.Optional;
 @Repository
 public interface LikedRecipeRepository extends JpaRepository<LikedRecipe, Long> {
 
-    // Get all liked recipes for a user
+    // Get all liked recipes for a user (recipes are serialized with their ingredients)
+    @EntityGraph(attributePaths = { "recipe", "recipe.ingredients" })
     List<LikedRecipe> findByUser(User user);
 
     // Check if a user already liked a recipe
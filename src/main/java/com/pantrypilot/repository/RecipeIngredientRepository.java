@@ -2,6 +2,13 @@ package com.pantrypilot.repository;
 
 import com.pantrypilot.model.RecipeIngredient;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface RecipeIngredientRepository extends JpaRepository<RecipeIngredient, Long> {
+
+    /** Next block end of the pooled ID sequence (see {@link com.pantrypilot.util.PooledSequence}). */
+    @Transactional
+    @Query(value = "SELECT nextval('recipe_ingredient_seq')", nativeQuery = true)
+    long nextIdBlock();
 }
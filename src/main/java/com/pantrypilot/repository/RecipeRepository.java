@@ -1,22 +1,89 @@
 package com.pantrypilot.repository;
 
+import com.pantrypilot.dto.RecipeInstructionsView;
+import com.pantrypilot.dto.RecipeSummaryRow;
 import com.pantrypilot.model.Recipe;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
 import java.util.Optional;
 import java.util.List;
-import java.util.Set;
 
 public interface RecipeRepository extends JpaRepository<Recipe, Long> {
 
-    @Query("SELECT DISTINCT r FROM Recipe r JOIN r.ingredients i " +
-            "WHERE r.prepTime BETWEEN :minPrepTime AND :maxPrepTime " +
-            "AND LOWER(i.ingredientName) IN :ingredientNames")
-    List<Recipe> findByPrepTimeAndIngredients(
+    /**
+     * IDs of recipes in the prep time range whose ingredients are covered by the
+     * pantry at least to the given ratio, best coverage first. The pantry is passed
+     * as parallel arrays (one entry per distinct normalized name); quantities in
+     * the same dimension are compared in base units, otherwise raw.
+     *
+     * Candidates come from idx_recipe_ingredient_name_recipe, the prep time range
+     * from idx_recipe_prep_time_id.
+     */
+    @Query(value = "SELECT c.recipe_id FROM (" +
+            "  SELECT ri.recipe_id, COUNT(*) AS total, " +
+            "    SUM(CASE WHEN p.name IS NOT NULL AND (CASE WHEN p.dimension = ri.unit_dimension " +
+            "        THEN p.base_quantity >= ri.base_quantity ELSE p.raw_quantity >= ri.quantity END) " +
+            "      THEN 1 ELSE 0 END) AS matched " +
+            "  FROM recipe r " +
+            "  JOIN recipe_ingredient ri ON ri.recipe_id = r.id " +
+            "  LEFT JOIN unnest(CAST(:names AS text[]), CAST(:dimensions AS text[]), " +
+            "      CAST(:baseQuantities AS float8[]), CAST(:rawQuantities AS float8[])) " +
+            "    AS p(name, dimension, base_quantity, raw_quantity) " +
+            "    ON p.name = ri.normalized_name " +
+            "  WHERE r.prep_time BETWEEN :minPrepTime AND :maxPrepTime " +
+            "    AND r.id IN (SELECT m.recipe_id FROM recipe_ingredient m " +
+            "      WHERE m.normalized_name = ANY(CAST(:names AS text[]))) " +
+            "  GROUP BY ri.recipe_id " +
+            "  HAVING SUM(CASE WHEN p.name IS NOT NULL AND (CASE WHEN p.dimension = ri.unit_dimension " +
+            "      THEN p.base_quantity >= ri.base_quantity ELSE p.raw_quantity >= ri.quantity END) " +
+            "    THEN 1 ELSE 0 END) >= :threshold * COUNT(*)" +
+            ") c " +
+            "ORDER BY CAST(c.matched AS float8) / c.total DESC, c.recipe_id " +
+            "LIMIT :limit", nativeQuery = true)
+    List<Long> findIdsByCoverage(
             @Param("minPrepTime") int minPrepTime,
             @Param("maxPrepTime") int maxPrepTime,
-            @Param("ingredientNames") Set<String> ingredientNames);
+            @Param("names") String[] names,
+            @Param("dimensions") String[] dimensions,
+            @Param("baseQuantities") Double[] baseQuantities,
+            @Param("rawQuantities") Double[] rawQuantities,
+            @Param("threshold") double threshold,
+            @Param("limit") int limit);
 
+    // Recipes with their ingredients in a single query. Open-in-view is off, so
+    // anything that reads ingredients outside the repository call needs these.
+    @EntityGraph(attributePaths = "ingredients")
+    List<Recipe> findWithIngredientsByIdIn(Collection<Long> ids);
+
+    @EntityGraph(attributePaths = "ingredients")
+    Optional<Recipe> findWithIngredientsById(Long id);
+
+    @EntityGraph(attributePaths = "ingredients")
+    @Query("SELECT r FROM Recipe r")
+    List<Recipe> findAllWithIngredients();
+
+    // Everything matching and the DTOs need, minus the instructions column
+    @Query("SELECT new com.pantrypilot.dto.RecipeSummaryRow(r.id, r.title, r.prepTime, " +
+            "i.id, i.ingredientName, i.quantity, i.unit) " +
+            "FROM Recipe r LEFT JOIN r.ingredients i " +
+            "WHERE r.id IN :ids ORDER BY r.id, i.id")
+    List<RecipeSummaryRow> findSummaryRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    List<RecipeInstructionsView> findInstructionsByIdIn(Collection<Long> ids);
+
+    @EntityGraph(attributePaths = "ingredients")
     Optional<Recipe> findByTitle(String title);
+
+    /** Next block end of the pooled ID sequence (see {@link com.pantrypilot.util.PooledSequence}). */
+    @Transactional
+    @Query(value = "SELECT nextval('recipe_seq')", nativeQuery = true)
+    long nextIdBlock();
+
+    /** Existing recipes for a batch of titles in one query. */
+    @EntityGraph(attributePaths = "ingredients")
+    List<Recipe> findByTitleIn(Collection<String> titles);
 }
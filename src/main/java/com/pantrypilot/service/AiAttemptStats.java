@@ -0,0 +1,83 @@
+package com.pantrypilot.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Recent AI generation behaviour, used to decide when to hedge or parallelize
+ * attempts and how many recipes to ask for: a window of attempt latencies for
+ * percentiles, and per pantry-size bucket an EWMA of the fraction of requested
+ * recipes that don't come back valid (small pantries hit the ingredient limit
+ * far more often).
+ */
+@Component
+public class AiAttemptStats {
+
+    private static final int WINDOW = 200;
+    private static final int MIN_SAMPLES = 20;
+    private static final double ALPHA = 0.2;
+    // Pantry sizes 1-3, 4-6, 7-10, 11+
+    private static final int[] BUCKET_UPPER_BOUNDS = {3, 6, 10};
+
+    private final long[] latenciesMs = new long[WINDOW];
+    private int samples = 0;
+    private int next = 0;
+
+    private final double[] rejectionRates = new double[BUCKET_UPPER_BOUNDS.length + 1];
+
+    public AiAttemptStats(MeterRegistry meterRegistry) {
+        for (int b = 0; b < rejectionRates.length; b++) {
+            int bucket = b;
+            String label = b < BUCKET_UPPER_BOUNDS.length
+                    ? "<=" + BUCKET_UPPER_BOUNDS[b]
+                    : ">" + BUCKET_UPPER_BOUNDS[b - 1];
+            meterRegistry.gauge("pantrypilot.ai.rejection.rate",
+                    Tags.of("pantry.size", label),
+                    this, stats -> stats.rejectionRateOfBucket(bucket));
+        }
+    }
+
+    public synchronized void recordLatency(long millis) {
+        latenciesMs[next] = millis;
+        next = (next + 1) % WINDOW;
+        samples = Math.min(samples + 1, WINDOW);
+    }
+
+    /** The p-th latency percentile (0..1) over the window, or {@code fallbackMs} until there are enough samples. */
+    public synchronized long latencyPercentile(double p, long fallbackMs) {
+        if (samples < MIN_SAMPLES)
+            return fallbackMs;
+        long[] sorted = Arrays.copyOf(latenciesMs, samples);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(p * samples) - 1;
+        return sorted[Math.max(0, Math.min(samples - 1, index))];
+    }
+
+    /** One attempt for a pantry of this size: how many recipes were asked for and how many were usable. */
+    public synchronized void recordOutcome(int pantrySize, int requested, int accepted) {
+        if (requested <= 0)
+            return;
+        double rejected = Math.max(0.0, (double) (requested - accepted) / requested);
+        int b = bucketOf(pantrySize);
+        rejectionRates[b] = ALPHA * rejected + (1 - ALPHA) * rejectionRates[b];
+    }
+
+    public synchronized double rejectionRate(int pantrySize) {
+        return rejectionRates[bucketOf(pantrySize)];
+    }
+
+    private synchronized double rejectionRateOfBucket(int bucket) {
+        return rejectionRates[bucket];
+    }
+
+    private static int bucketOf(int pantrySize) {
+        for (int b = 0; b < BUCKET_UPPER_BOUNDS.length; b++) {
+            if (pantrySize <= BUCKET_UPPER_BOUNDS[b])
+                return b;
+        }
+        return BUCKET_UPPER_BOUNDS.length;
+    }
+}
@@ -0,0 +1,24 @@
+package com.pantrypilot.service;
+
+import com.pantrypilot.model.Recipe;
+
+import java.util.List;
+
+/**
+ * An AI generation that failed (rejected by the bulkhead, timed out, or the
+ * provider errored) rather than returning recipes. Carries the valid recipes
+ * streamed before the failure, which are already queued for saving.
+ */
+public class AiGenerationException extends RuntimeException {
+
+    private final List<Recipe> recipes;
+
+    public AiGenerationException(List<Recipe> recipes, Throwable cause) {
+        super("AI generation failed: " + cause.getMessage(), cause);
+        this.recipes = List.copyOf(recipes);
+    }
+
+    public List<Recipe> getRecipes() {
+        return recipes;
+    }
+}
@@ -0,0 +1,132 @@
+package com.pantrypilot.service;
+
+import com.google.genai.Client;
+import com.google.genai.ResponseStream;
+import com.google.genai.types.GenerateContentResponse;
+import com.google.genai.types.HttpOptions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * The one Gemini client for the application, behind a bulkhead.
+ *
+ * The SDK client keeps its own pooled keep-alive HTTP connections, so building
+ * it once avoids a fresh TLS handshake per generation. At most
+ * {@code ai.max-in-flight} calls run at once; up to {@code ai.max-queued}
+ * more wait (for at most {@code ai.queue-timeout-ms}) and anything beyond is
+ * rejected straight away with a {@link RejectedExecutionException}.
+ */
+@Component
+@ConditionalOnProperty(name = "ai.provider", havingValue = "gemini", matchIfMissing = true)
+public class GeminiClient {
+
+    private final Client client;
+    private final String model;
+    private final int maxQueued;
+    private final long queueTimeoutMs;
+
+    private final Semaphore permits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final Timer callTimer;
+    private final Timer waitTimer;
+    private final Counter failures;
+    private final Counter rejections;
+
+    public GeminiClient(@Value("${gemini.api.key}") String apiKey,
+            @Value("${ai.gemini.model:gemini-2.5-flash}") String model,
+            @Value("${ai.timeout-ms:60000}") int timeoutMs,
+            @Value("${ai.max-in-flight:4}") int maxInFlight,
+            @Value("${ai.max-queued:16}") int maxQueued,
+            @Value("${ai.queue-timeout-ms:10000}") long queueTimeoutMs,
+            MeterRegistry meterRegistry) {
+        this.client = Client.builder()
+                .apiKey(apiKey)
+                .httpOptions(HttpOptions.builder().apiVersion("v1").timeout(timeoutMs).build())
+                .build();
+        this.model = model;
+        this.maxQueued = maxQueued;
+        this.queueTimeoutMs = queueTimeoutMs;
+        this.permits = new Semaphore(maxInFlight, true);
+
+        this.callTimer = meterRegistry.timer("pantrypilot.ai.call");
+        this.waitTimer = meterRegistry.timer("pantrypilot.ai.queue.wait");
+        this.failures = meterRegistry.counter("pantrypilot.ai.call.failures");
+        this.rejections = meterRegistry.counter("pantrypilot.ai.rejected");
+        meterRegistry.gauge("pantrypilot.ai.in.flight", inFlight);
+        meterRegistry.gauge("pantrypilot.ai.queue.depth", queued);
+    }
+
+    /**
+     * Streams the response, handing each text chunk to {@code onChunk} as it
+     * arrives. Holds one in-flight slot until the stream ends.
+     */
+    public void generateStream(String prompt, Consumer<String> onChunk) throws InterruptedException {
+        withPermit(() -> {
+            try (ResponseStream<GenerateContentResponse> stream =
+                         client.models.generateContentStream(model, prompt, null)) {
+                for (GenerateContentResponse chunk : stream) {
+                    String text = chunk.text();
+                    if (text != null && !text.isEmpty())
+                        onChunk.accept(text);
+                }
+            }
+            return null;
+        });
+    }
+
+    private <T> T withPermit(Supplier<T> call) throws InterruptedException {
+        acquire();
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            callTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            inFlight.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    private void acquire() throws InterruptedException {
+        if (permits.tryAcquire())
+            return;
+
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejections.increment();
+            throw new RejectedExecutionException("AI queue full (" + maxQueued + " waiting)");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejections.increment();
+                throw new RejectedExecutionException("Timed out waiting for an AI slot after " + queueTimeoutMs + " ms");
+            }
+        } finally {
+            queued.decrementAndGet();
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        client.close();
+    }
+}
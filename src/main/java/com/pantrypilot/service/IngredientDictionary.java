@@ -0,0 +1,53 @@
+package com.pantrypilot.service;
+
+import com.pantrypilot.util.IngredientNames;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns canonical ingredient names to dense int IDs (0, 1, 2, ...).
+ *
+ * IDs are never reused or removed, so they can be used as array indexes by
+ * anything that keeps per-ingredient data.
+ */
+@Component
+public class IngredientDictionary {
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    public static String canonicalName(String name) {
+        return IngredientNames.normalize(name);
+    }
+
+    /** Returns the ID for the name, assigning a new one if it was never seen. */
+    public int intern(String name) {
+        return ids.computeIfAbsent(canonicalName(name), key -> {
+            synchronized (names) {
+                names.add(key);
+                return names.size() - 1;
+            }
+        });
+    }
+
+    /** Returns the ID for the name, or -1 if it is not in the dictionary. */
+    public int idOf(String name) {
+        Integer id = ids.get(canonicalName(name));
+        return id != null ? id : -1;
+    }
+
+    public String nameOf(int id) {
+        synchronized (names) {
+            return names.get(id);
+        }
+    }
+
+    public int size() {
+        synchronized (names) {
+            return names.size();
+        }
+    }
+}
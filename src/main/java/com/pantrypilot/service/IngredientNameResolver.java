@@ -0,0 +1,120 @@
+package com.pantrypilot.service;
+
+import com.pantrypilot.util.IngredientNames;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps raw ingredient names to {@link IngredientDictionary} IDs.
+ *
+ * Names are first reduced to a key: normalized, aliases replaced and every
+ * word singularized ("Tomatoes" -> "tomato", "scallions" -> "green onion").
+ * Keys that aren't in the dictionary fall back to a word index over the known
+ * keys: only keys whose words all appear in the name qualify (the name is a
+ * more specific form of it), and the best whole-word overlap wins. So
+ * "extra virgin olive oil" can resolve to "olive oil", but "milk" never to
+ * "coconut milk" nor "oil" to "boiled". Results are cached per raw name.
+ */
+@Component
+@RequiredArgsConstructor
+public class IngredientNameResolver {
+
+    // Minimum Jaccard similarity between word sets for a fuzzy match
+    private static final double MIN_SIMILARITY = 0.5;
+    private static final int MAX_CACHED_NAMES = 50_000;
+
+    private final IngredientDictionary dictionary;
+
+    // Word -> dictionary IDs whose key contains it
+    private final Map<String, List<Integer>> idsByWord = new ConcurrentHashMap<>();
+    // Raw name -> resolved ID (-1 for no match); cleared when new keys are interned
+    private final Map<String, Integer> resolved = new ConcurrentHashMap<>();
+
+    /** The key a raw name is stored under; names with equal keys are the same ingredient. */
+    public static String keyOf(String name) {
+        return IngredientNames.key(name);
+    }
+
+    /** Returns the ID for the name, adding its key to the dictionary if needed. */
+    public int intern(String name) {
+        String key = keyOf(name);
+        int existing = dictionary.idOf(key);
+        if (existing >= 0)
+            return existing;
+
+        int id = dictionary.intern(key);
+        synchronized (idsByWord) {
+            for (String word : key.split(" ")) {
+                List<Integer> ids = idsByWord.computeIfAbsent(word, w -> new ArrayList<>());
+                if (!ids.contains(id))
+                    ids.add(id);
+            }
+        }
+        // Earlier misses or fuzzy picks may resolve differently now
+        resolved.clear();
+        return id;
+    }
+
+    /** Returns the ID the name resolves to, or -1 if nothing known is close enough. */
+    public int resolve(String name) {
+        if (name == null)
+            return -1;
+        Integer cached = resolved.get(name);
+        if (cached != null)
+            return cached;
+
+        String key = keyOf(name);
+        int id = dictionary.idOf(key);
+        if (id < 0 && !key.isEmpty())
+            id = closestMatch(key);
+
+        if (resolved.size() >= MAX_CACHED_NAMES)
+            resolved.clear();
+        resolved.put(name, id);
+        return id;
+    }
+
+    /** The dictionary name the raw name resolves to, or its key if it doesn't resolve. */
+    public String canonicalName(String name) {
+        int id = resolve(name);
+        return id >= 0 ? dictionary.nameOf(id) : keyOf(name);
+    }
+
+    private int closestMatch(String key) {
+        String[] words = key.split(" ");
+        Set<String> queryWords = new HashSet<>(Arrays.asList(words));
+
+        // Shared word counts per candidate
+        Map<Integer, Integer> shared = new HashMap<>();
+        synchronized (idsByWord) {
+            for (String word : queryWords) {
+                List<Integer> ids = idsByWord.get(word);
+                if (ids == null)
+                    continue;
+                for (int id : ids) {
+                    shared.merge(id, 1, Integer::sum);
+                }
+            }
+        }
+
+        int best = -1;
+        double bestScore = 0;
+        for (Map.Entry<Integer, Integer> e : shared.entrySet()) {
+            int candidateWords = new HashSet<>(Arrays.asList(dictionary.nameOf(e.getKey()).split(" "))).size();
+            int common = e.getValue();
+            // A word the name doesn't have makes the candidate a different ingredient
+            if (common < candidateWords)
+                continue;
+            double score = (double) common / (queryWords.size() + candidateWords - common);
+            // Lower ID wins ties so the result doesn't depend on map order
+            if (score > bestScore || (score == bestScore && e.getKey() < best)) {
+                best = e.getKey();
+                bestScore = score;
+            }
+        }
+        return bestScore >= MIN_SIMILARITY ? best : -1;
+    }
+}
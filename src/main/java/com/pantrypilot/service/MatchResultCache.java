@@ -0,0 +1,174 @@
+package com.pantrypilot.service;
+
+import com.pantrypilot.dto.RecipeDTO;
+import com.pantrypilot.model.PantryIngredient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Match results shared across sessions, keyed by a fingerprint of the
+ * normalized pantry and the prep time range.
+ *
+ * Thousands of users submit the same handful of pantries ("onion, tomato,
+ * rice"); a hit skips DB matching and AI generation and goes straight to
+ * building the session in {@link RecipeCacheService}. LRU-bounded, and
+ * cleared whenever the catalog is edited through the recipe API.
+ */
+@Service
+public class MatchResultCache {
+
+    public static class CachedMatch {
+        // Swapped, never mutated, when a write-behind recipe is replaced
+        private volatile List<RecipeDTO> recipes;
+        private volatile Set<String> aiTitles;
+        private final RankedMatch dbCursor;
+        private final boolean dbExhausted;
+
+        CachedMatch(List<RecipeDTO> recipes, Set<String> aiTitles, RankedMatch dbCursor, boolean dbExhausted) {
+            this.recipes = Collections.unmodifiableList(new ArrayList<>(recipes));
+            this.aiTitles = Collections.unmodifiableSet(new HashSet<>(aiTitles));
+            this.dbCursor = dbCursor;
+            this.dbExhausted = dbExhausted;
+        }
+
+        public List<RecipeDTO> getRecipes() {
+            return recipes;
+        }
+
+        public Set<String> getAiTitles() {
+            return aiTitles;
+        }
+
+        public RankedMatch getDbCursor() {
+            return dbCursor;
+        }
+
+        public boolean isDbExhausted() {
+            return dbExhausted;
+        }
+
+        /** AI recipe IDs, the ones a write-behind flush may replace. */
+        private List<Long> aiRecipeIds() {
+            List<Long> ids = new ArrayList<>();
+            for (RecipeDTO recipe : recipes) {
+                if (recipe.getId() != null && recipe.getTitle() != null
+                        && aiTitles.contains(recipe.getTitle().toLowerCase()))
+                    ids.add(recipe.getId());
+            }
+            return ids;
+        }
+
+        private void replace(Long id, RecipeDTO replacement) {
+            List<RecipeDTO> replaced = new ArrayList<>(recipes);
+            replaced.replaceAll(recipe -> id.equals(recipe.getId()) ? replacement : recipe);
+            recipes = Collections.unmodifiableList(replaced);
+            if (replacement.getTitle() != null && !aiTitles.contains(replacement.getTitle().toLowerCase())) {
+                Set<String> titles = new HashSet<>(aiTitles);
+                titles.add(replacement.getTitle().toLowerCase());
+                aiTitles = Collections.unmodifiableSet(titles);
+            }
+        }
+    }
+
+    private final Map<String, CachedMatch> entries;
+    // AI recipe ID -> entries holding it, so a write-behind replacement skips the rest
+    private final Map<Long, Set<CachedMatch>> entriesByAiRecipeId = new HashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    public MatchResultCache(@Value("${matching.result-cache.max-entries:1000}") int maxEntries,
+            MeterRegistry meterRegistry) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedMatch> eldest) {
+                if (size() <= maxEntries)
+                    return false;
+                unindex(eldest.getValue());
+                return true;
+            }
+        };
+        this.hits = meterRegistry.counter("pantrypilot.match.result.cache", "result", "hit");
+        this.misses = meterRegistry.counter("pantrypilot.match.result.cache", "result", "miss");
+        meterRegistry.gauge("pantrypilot.match.result.cache.size", this, MatchResultCache::size);
+    }
+
+    /**
+     * Canonical key: distinct ingredient keys (first entry wins, as in matching)
+     * with unit dimension and base quantity, sorted, plus the prep time range.
+     */
+    public static String fingerprint(List<PantryIngredient> pantryIngredients, int minPrepTime, int maxPrepTime) {
+        Map<String, PantryIngredient> byName = new HashMap<>();
+        for (PantryIngredient pi : pantryIngredients) {
+            if (pi.getIngredientName() != null)
+                byName.putIfAbsent(IngredientNameResolver.keyOf(pi.getIngredientName()), pi);
+        }
+
+        List<String> parts = new ArrayList<>();
+        for (Map.Entry<String, PantryIngredient> e : byName.entrySet()) {
+            PantryIngredient pi = e.getValue();
+            parts.add(e.getKey() + "|" + pi.getParsedUnit().getDimension() + "|" + pi.getBaseQuantity()
+                    + "|" + pi.getQuantity());
+        }
+        Collections.sort(parts);
+        return String.join(";", parts) + "@" + minPrepTime + "-" + maxPrepTime;
+    }
+
+    public synchronized CachedMatch get(String fingerprint) {
+        CachedMatch match = entries.get(fingerprint);
+        if (match != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return match;
+    }
+
+    public synchronized void put(String fingerprint, List<RecipeDTO> recipes, Set<String> aiTitles,
+            RankedMatch dbCursor, boolean dbExhausted) {
+        CachedMatch match = new CachedMatch(recipes, aiTitles, dbCursor, dbExhausted);
+        CachedMatch previous = entries.put(fingerprint, match);
+        if (previous != null)
+            unindex(previous);
+        for (Long id : match.aiRecipeIds()) {
+            entriesByAiRecipeId.computeIfAbsent(id, k -> new HashSet<>()).add(match);
+        }
+    }
+
+    /**
+     * Replaces cached recipes with these IDs by the given ones (a write-behind
+     * AI recipe whose title turned out to be taken). Only the entries holding
+     * them are touched, and they get new lists: DTOs already handed out stay
+     * as they were.
+     */
+    public synchronized void replaceRecipes(Map<Long, RecipeDTO> replacements) {
+        for (Map.Entry<Long, RecipeDTO> replacement : replacements.entrySet()) {
+            Set<CachedMatch> holders = entriesByAiRecipeId.remove(replacement.getKey());
+            if (holders == null)
+                continue;
+            for (CachedMatch match : holders) {
+                match.replace(replacement.getKey(), replacement.getValue());
+            }
+        }
+    }
+
+    private void unindex(CachedMatch match) {
+        for (Long id : match.aiRecipeIds()) {
+            Set<CachedMatch> holders = entriesByAiRecipeId.get(id);
+            if (holders != null && holders.remove(match) && holders.isEmpty())
+                entriesByAiRecipeId.remove(id);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        entriesByAiRecipeId.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,24 @@
+package com.pantrypilot.service;
+
+import com.pantrypilot.dto.RecipeDTO;
+
+import java.util.List;
+
+/**
+ * Receives a streamed match as it progresses: the session token, DB matches,
+ * each AI recipe once saved, then image URLs as they resolve.
+ */
+public interface MatchStreamListener {
+
+    void onToken(String token);
+
+    void onDbRecipes(List<RecipeDTO> recipes);
+
+    void onAiRecipe(RecipeDTO recipe);
+
+    void onImage(Long recipeId, String ingredientName, String imageUrl);
+
+    void onComplete();
+
+    void onError(Exception e);
+}
@@ -0,0 +1,104 @@
+package com.pantrypilot.service;
+
+import com.pantrypilot.model.PantryIngredient;
+import com.pantrypilot.util.Unit;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A request's pantry keyed by dictionary ingredient ID, built once per request.
+ *
+ * IDs are kept sorted so lookups are a binary search over an int[]; each entry
+ * carries its unit dimension, base-unit quantity and raw quantity, as parsed by
+ * the {@link PantryIngredient}. Names that don't resolve to a known ingredient
+ * are dropped since no recipe can use them.
+ */
+public final class PantryLookup {
+
+    private final int[] ids;
+    private final Unit.Dimension[] dimensions;
+    private final double[] baseQuantities;
+    private final double[] rawQuantities;
+
+    private PantryLookup(int[] ids, Unit.Dimension[] dimensions, double[] baseQuantities, double[] rawQuantities) {
+        this.ids = ids;
+        this.dimensions = dimensions;
+        this.baseQuantities = baseQuantities;
+        this.rawQuantities = rawQuantities;
+    }
+
+    public static PantryLookup of(List<PantryIngredient> pantryIngredients, IngredientNameResolver resolver) {
+        int[] ids = new int[pantryIngredients.size()];
+        PantryIngredient[] entries = new PantryIngredient[pantryIngredients.size()];
+        int size = 0;
+
+        for (PantryIngredient pi : pantryIngredients) {
+            if (pi.getIngredientName() == null)
+                continue;
+            int id = resolver.resolve(pi.getIngredientName());
+            if (id < 0)
+                continue;
+
+            // First pantry entry wins for duplicate names
+            boolean duplicate = false;
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (duplicate)
+                continue;
+
+            ids[size] = id;
+            entries[size] = pi;
+            size++;
+        }
+
+        // Sort ids and carry the entries along
+        long[] packed = new long[size];
+        for (int i = 0; i < size; i++) {
+            packed[i] = ((long) ids[i] << 32) | i;
+        }
+        Arrays.sort(packed);
+
+        int[] sortedIds = new int[size];
+        Unit.Dimension[] dimensions = new Unit.Dimension[size];
+        double[] baseQuantities = new double[size];
+        double[] rawQuantities = new double[size];
+        for (int i = 0; i < size; i++) {
+            PantryIngredient pi = entries[(int) packed[i]];
+            sortedIds[i] = (int) (packed[i] >>> 32);
+            dimensions[i] = pi.getParsedUnit().getDimension();
+            baseQuantities[i] = pi.getBaseQuantity();
+            rawQuantities[i] = pi.getQuantity();
+        }
+        return new PantryLookup(sortedIds, dimensions, baseQuantities, rawQuantities);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int idAt(int index) {
+        return ids[index];
+    }
+
+    public Unit.Dimension dimensionAt(int index) {
+        return dimensions[index];
+    }
+
+    public double baseQuantityAt(int index) {
+        return baseQuantities[index];
+    }
+
+    public double rawQuantityAt(int index) {
+        return rawQuantities[index];
+    }
+
+    /** Index of the ingredient in this pantry, or a negative value if absent. */
+    public int indexOf(int ingredientId) {
+        return Arrays.binarySearch(ids, ingredientId);
+    }
+}
@@ -0,0 +1,90 @@
+package com.pantrypilot.service;
+
+import java.util.*;
+
+/**
+ * A session's per-recipe hit counters (pantry ingredients covered, by recipe
+ * ID) within its prep time range, as of one version of the recipe index.
+ *
+ * Keyed by recipe ID rather than index slot since slots move on compaction.
+ * Built by {@link RecipeIndexService#countHits} and kept current through
+ * {@link RecipeIndexService#applyPantryChange} and
+ * {@link RecipeIndexService#refresh}, so a pantry edit only touches the
+ * recipes that use the changed ingredient, and a catalog change only the
+ * recipes it added or removed.
+ *
+ * Qualifying recipes are also kept in rank order as their counters change,
+ * so a page of top matches costs O(k log n) rather than a pass over every
+ * recipe with a hit.
+ */
+public final class PantryMatchState {
+
+    private final int minPrepTime;
+    private final int maxPrepTime;
+    private long indexVersion;
+    final Map<Long, Integer> hitsByRecipe = new HashMap<>();
+    private final Map<Long, RankedMatch> matchByRecipe = new HashMap<>();
+    private final NavigableSet<RankedMatch> ranked = new TreeSet<>(RankedMatch.BEST_FIRST);
+
+    PantryMatchState(long indexVersion, int minPrepTime, int maxPrepTime) {
+        this.indexVersion = indexVersion;
+        this.minPrepTime = minPrepTime;
+        this.maxPrepTime = maxPrepTime;
+    }
+
+    public long getIndexVersion() {
+        return indexVersion;
+    }
+
+    public int size() {
+        return hitsByRecipe.size();
+    }
+
+    int getMinPrepTime() {
+        return minPrepTime;
+    }
+
+    int getMaxPrepTime() {
+        return maxPrepTime;
+    }
+
+    void setIndexVersion(long indexVersion) {
+        this.indexVersion = indexVersion;
+    }
+
+    int hits(long recipeId) {
+        return hitsByRecipe.getOrDefault(recipeId, 0);
+    }
+
+    /** Sets a recipe's counter and its ranked entry ({@code match} is null unless it qualifies). */
+    void setHits(long recipeId, int hits, RankedMatch match) {
+        if (hits > 0) {
+            hitsByRecipe.put(recipeId, hits);
+        } else {
+            hitsByRecipe.remove(recipeId);
+        }
+        RankedMatch old = match != null ? matchByRecipe.put(recipeId, match) : matchByRecipe.remove(recipeId);
+        if (old != null)
+            ranked.remove(old);
+        if (match != null)
+            ranked.add(match);
+    }
+
+    /** Best {@code k} qualifying recipes ranked strictly after {@code after} (null for the first page). */
+    List<RankedMatch> top(int k, RankedMatch after) {
+        List<RankedMatch> top = new ArrayList<>(Math.min(k, ranked.size()));
+        for (RankedMatch match : after == null ? ranked : ranked.tailSet(after, false)) {
+            if (top.size() == k)
+                break;
+            top.add(match);
+        }
+        return top;
+    }
+
+    void clear(long indexVersion) {
+        this.indexVersion = indexVersion;
+        hitsByRecipe.clear();
+        matchByRecipe.clear();
+        ranked.clear();
+    }
+}
@@ -0,0 +1,48 @@
+package com.pantrypilot.service;
+
+import java.util.Comparator;
+
+/**
+ * A recipe that passed the coverage threshold, with what it is ranked by.
+ *
+ * Best first: higher ingredient coverage, then fewer missing ingredients, then
+ * shorter prep time, then lower ID so the order is total. The last match of a
+ * page doubles as the cursor for the next one.
+ */
+public final class RankedMatch {
+
+    /** Best match first. */
+    public static final Comparator<RankedMatch> BEST_FIRST = Comparator
+            .comparingDouble(RankedMatch::getCoverage).reversed()
+            .thenComparingInt(RankedMatch::getMissing)
+            .thenComparingInt(RankedMatch::getPrepTime)
+            .thenComparingLong(RankedMatch::getRecipeId);
+
+    private final long recipeId;
+    private final double coverage;
+    private final int missing;
+    private final int prepTime;
+
+    public RankedMatch(long recipeId, double coverage, int missing, int prepTime) {
+        this.recipeId = recipeId;
+        this.coverage = coverage;
+        this.missing = missing;
+        this.prepTime = prepTime;
+    }
+
+    public long getRecipeId() {
+        return recipeId;
+    }
+
+    public double getCoverage() {
+        return coverage;
+    }
+
+    public int getMissing() {
+        return missing;
+    }
+
+    public int getPrepTime() {
+        return prepTime;
+    }
+}
@@ -1,105 +1,152 @@
 package com.pantrypilot.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.genai.Client;
-import com.google.genai.types.GenerateContentResponse;
-import com.google.genai.types.HttpOptions;
+import com.pantrypilot.dto.AiRecipeRequest;
 import com.pantrypilot.model.Recipe;
 import com.pantrypilot.model.RecipeIngredient;
-import com.pantrypilot.repository.RecipeRepository;
+import com.pantrypilot.util.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 @Service
 @RequiredArgsConstructor
 public class RecipeAIService {
 
-    @Value("${gemini.api.key}")
-    private String geminiApiKey;
-
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    private final RecipeRepository recipeRepository;
+    private final RecipeWriteBehindQueue writeBehindQueue;
+    private final RecipeGenerator recipeGenerator;
+    private final MeterRegistry meterRegistry;
+
+    // Identical prompts in flight at the same time share one generation
+    private final SingleFlight<AiRecipeRequest, Generation> inFlightGenerations = new SingleFlight<>();
+
+    /** Recipes saved by one generation, and what cut it short if it failed. */
+    private record Generation(List<Recipe> recipes, Exception failure) {
+    }
 
-    @Transactional
+    /**
+     * Calls the recipe generator and persists what it returns. Deliberately not
+     * transactional: no pooled connection is held during the HTTP call, and
+     * recipes go to the write-behind queue, so they come back under their final
+     * (reserved) IDs and are saved in the next batched flush.
+     *
+     * Concurrent calls that would build the same prompt wait for the first one
+     * and share its recipes; each caller then drops its own excluded titles.
+     *
+     * @throws AiGenerationException if the generator failed; it carries the
+     *         recipes saved before the failure
+     */
     public List<Recipe> generateRecipes(
             List<Map<String, Object>> ingredients,
             int minPrepTime,
             int maxPrepTime,
             Set<String> excludedTitles,
             int count) {
-        try {
-            if (ingredients == null || ingredients.isEmpty())
-                return Collections.emptyList();
-
-            // 1. Build the AI prompt
-            String prompt = buildPrompt(ingredients, minPrepTime, maxPrepTime, excludedTitles, count);
-            System.out.println("Gemini Prompt: " + prompt);
-
-            // 2. Create Gemini client with v1 API
-            Client client = Client.builder()
-                    .apiKey(geminiApiKey)
-                    .httpOptions(HttpOptions.builder().apiVersion("v1").build())
-                    .build();
-
-            // 3. Call Gemini API with Gemini 2.5 Flash
-            GenerateContentResponse resp = client.models.generateContent(
-                    "gemini-2.5-flash",
-                    prompt,
-                    null);
-
-            if (resp == null || resp.text() == null || resp.text().isBlank()) {
-                return Collections.emptyList();
-            }
-
-            String text = resp.text();
-
-            System.out.println(text);
-
-            // 4. Parse into Recipe objects
-            List<Recipe> aiRecipes = parseAiResponse(text);
+        return generateRecipes(ingredients, minPrepTime, maxPrepTime, excludedTitles, count, 0, recipe -> {
+        });
+    }
 
-            // 5. Ensure bidirectional link for ingredients
-            for (Recipe recipe : aiRecipes) {
-                if (recipe.getIngredients() != null) {
-                    for (RecipeIngredient ri : recipe.getIngredients()) {
-                        ri.setRecipe(recipe);
-                    }
-                }
-            }
+    /**
+     * Same as above, but also hands each valid, saved recipe to {@code onRecipe}
+     * as soon as the model finishes writing it, rather than after the whole
+     * response. Calls with different {@code attempt} numbers are never shared,
+     * so a caller can run hedged attempts of the same prompt.
+     */
+    public List<Recipe> generateRecipes(
+            List<Map<String, Object>> ingredients,
+            int minPrepTime,
+            int maxPrepTime,
+            Set<String> excludedTitles,
+            int count,
+            int attempt,
+            Consumer<Recipe> onRecipe) {
+        if (ingredients == null || ingredients.isEmpty())
+            return Collections.emptyList();
 
-            System.out.println("Gemini returned " + aiRecipes.size() + " recipes");
+        Predicate<Recipe> notExcluded = r -> r.getTitle() != null
+                && !excludedTitles.contains(r.getTitle().toLowerCase());
+
+        AiRecipeRequest key = AiRecipeRequest.of(ingredients, minPrepTime, maxPrepTime, count,
+                !excludedTitles.isEmpty(), attempt);
+        SingleFlight.Result<Generation> result = inFlightGenerations.run(key,
+                () -> streamAndSave(ingredients, minPrepTime, maxPrepTime, excludedTitles, count, recipe -> {
+                    if (notExcluded.test(recipe))
+                        onRecipe.accept(recipe);
+                }));
+        meterRegistry.counter("pantrypilot.ai.generations", "shared", String.valueOf(result.isShared())).increment();
+
+        List<Recipe> recipes = new ArrayList<>(result.getValue().recipes());
+        recipes.removeIf(notExcluded.negate());
+        // Waiters only see the recipes once the shared call is done
+        if (result.isShared())
+            recipes.forEach(onRecipe);
+        if (result.getValue().failure() != null)
+            throw new AiGenerationException(recipes, result.getValue().failure());
+        return recipes;
+    }
 
-            // 6. Save to DB and return (with pre-check to avoid duplicate insert failure)
-            List<Recipe> finalRecipes = new ArrayList<>();
+    private Generation streamAndSave(
+            List<Map<String, Object>> ingredients,
+            int minPrepTime,
+            int maxPrepTime,
+            Set<String> excludedTitles,
+            int count,
+            Consumer<Recipe> onRecipe) {
+        List<Recipe> saved = new ArrayList<>();
+        try {
+            // 1. Build the AI prompt
+            String prompt = buildPrompt(ingredients, minPrepTime, maxPrepTime, excludedTitles, count);
+            System.out.println("AI Prompt: " + prompt);
 
-            for (Recipe recipe : aiRecipes) {
-                Optional<Recipe> existing = recipeRepository.findByTitle(recipe.getTitle());
+            // Same limit the prompt asks for
+            int maxAllowedIngredients = (int) Math.floor(ingredients.size() / 0.75);
 
-                if (existing.isPresent()) {
-                    System.out.println("Duplicate recipe found, using existing: " + recipe.getTitle());
-                    finalRecipes.add(existing.get());
-                } else {
-                    for (RecipeIngredient ri : recipe.getIngredients()) {
-                        ri.setRecipe(recipe);
-                    }
-                    Recipe saved = recipeRepository.save(recipe);
-                    finalRecipes.add(saved);
+            // 2. Parse each recipe as its JSON object closes, validate, queue and emit it
+            RecipeStreamParser streamParser = new RecipeStreamParser(objectMapper, recipe -> {
+                if (!isValid(recipe, maxAllowedIngredients))
+                    return;
+                for (RecipeIngredient ri : recipe.getIngredients()) {
+                    ri.setRecipe(recipe);
                 }
-            }
-
-            return finalRecipes;
-
+                Recipe queued = writeBehindQueue.enqueue(recipe);
+                saved.add(queued);
+                onRecipe.accept(queued);
+            });
+
+            // 3. Stream from the configured generator (Gemini, or the local stub)
+            recipeGenerator.generate(prompt, ingredients, minPrepTime, maxPrepTime, count, streamParser::feed);
+
+            System.out.println("AI streamed " + saved.size() + " valid recipes");
+        } catch (InterruptedException e) {
+            // Keep the flag so callers can tell the result was cut short
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
-            e.printStackTrace();
-            return Collections.emptyList();
+            // Whatever was saved before the stream failed is kept
+            System.out.println("AI generation failed after " + saved.size() + " recipes: " + e);
+            return new Generation(saved, e);
         }
+        return new Generation(saved, null);
+    }
+
+    private boolean isValid(Recipe recipe, int maxAllowedIngredients) {
+        if (recipe.getTitle() == null || recipe.getTitle().isBlank())
+            return false;
+        if (recipe.getIngredients() == null || recipe.getIngredients().isEmpty()) {
+            System.out.println("Rejecting recipe '" + recipe.getTitle() + "': no ingredients");
+            return false;
+        }
+        if (recipe.getIngredients().size() > maxAllowedIngredients) {
+            System.out.println("Rejecting recipe '" + recipe.getTitle() + "': has " + recipe.getIngredients().size()
+                    + " ingredients, max allowed is " + maxAllowedIngredients);
+            return false;
+        }
+        return true;
     }
 
     private String buildPrompt(List<Map<String, Object>> ingredients, int minPrepTime,
@@ -132,52 +179,4 @@ public class RecipeAIService {
         return sb.toString();
     }
 
-
-    private String cleanJson(String text) {
-        // remove // comments
-        text = text.replaceAll("(?m)//.*$", "");
-        // remove /* ... */ comments (including multiline)
-        text = text.replaceAll("(?s)/\\*.*?\\*/", "");
-        return text.trim();
-    }
-
-    /**
-     * Parse Gemini text response into Recipe objects
-     */
-    private List<Recipe> parseAiResponse(String text) throws Exception {
-        // Extract JSON array safely
-        int start = text.indexOf("[");
-        int end = text.lastIndexOf("]");
-        if (start == -1 || end == -1 || start >= end)
-            return Collections.emptyList();
-
-        String jsonArray = cleanJson(text.substring(start, end + 1));
-        objectMapper.configure(com.fasterxml.jackson.core.JsonParser.Feature.ALLOW_COMMENTS, true);
-
-        List<Recipe> recipes = objectMapper.readValue(jsonArray, new TypeReference<List<Recipe>>() {
-        });
-
-        // ✅ Clean up invalid quantities in ingredients
-        for (Recipe recipe : recipes) {
-            if (recipe.getIngredients() == null)
-                continue;
-
-            recipe.setIngredients(
-                    recipe.getIngredients().stream()
-                            .filter(ri -> {
-                                try {
-                                    Double.parseDouble(String.valueOf(ri.getQuantity())); // keep if numeric
-                                    return true;
-                                } catch (Exception e) {
-                                    System.out.println(
-                                            "Skipping ingredient due to invalid quantity: " + ri.getIngredientName());
-                                    return false;
-                                }
-                            })
-                            .collect(Collectors.toList()));
-        }
-
-        return recipes;
-    }
-
 }
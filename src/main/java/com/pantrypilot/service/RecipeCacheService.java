@@ -3,15 +3,32 @@ package com.pantrypilot.service;
 
 import com.pantrypilot.dto.RecipeDTO;
 import com.pantrypilot.model.PantryIngredient;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors; // Import Collectors
 
 @Service
+@RequiredArgsConstructor
 public class RecipeCacheService {
 
+    public static final int MAX_AI_RECIPES_PER_SESSION = 5;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${matching.session-ttl-ms:1800000}")
+    private long sessionTtlMs;
+
     private static class CacheEntry {
         List<RecipeDTO> recipes;
         List<PantryIngredient> pantryIngredients;
@@ -19,10 +36,15 @@ public class RecipeCacheService {
         Set<String> presentedTitles;
         Set<String> aiTitles; // track AI-generated recipe titles
         Set<String> allCachedTitles; // NEW: Track all unique titles ever added to this cache entry
-        long createdAt;
+        volatile long lastAccessedAt; // last batch or pantry edit; sessions expire on inactivity
         int minPrepTime;
         int maxPrepTime;
         int aiRecipesServed; // AI recipes already served
+        RankedMatch dbCursor; // last ranked DB match handed to this session
+        boolean dbExhausted = true; // no more ranked DB matches to fetch
+        PantryMatchState matchState; // hit counters, built on the first pantry edit
+        Future<?> prefetch; // background AI generation for this session, if any
+        Set<String> prefetchedTitles = new HashSet<>(); // added by prefetch, not yet served
 
         CacheEntry(List<RecipeDTO> recipes,
                 List<PantryIngredient> pantryIngredients,
@@ -34,7 +56,7 @@ public class RecipeCacheService {
             this.currentIndex = 0;
             this.presentedTitles = new HashSet<>();
             this.aiTitles = aiTitles != null ? new HashSet<>(aiTitles) : new HashSet<>();
-            this.createdAt = System.currentTimeMillis();
+            this.lastAccessedAt = System.currentTimeMillis();
             this.minPrepTime = minPrepTime;
             this.maxPrepTime = maxPrepTime;
             this.aiRecipesServed = 0;
@@ -51,6 +73,8 @@ public class RecipeCacheService {
     }
 
     private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+    // AI recipe ID -> sessions holding it, so a write-behind replacement skips the rest
+    private final Map<Long, Set<String>> tokensByAiRecipeId = new ConcurrentHashMap<>();
 
     /**
      * Adds matched recipes DTOs + pantry ingredients + prep time filters to cache
@@ -69,6 +93,9 @@ public class RecipeCacheService {
         // The CacheEntry constructor now handles initial de-duplication
         CacheEntry newEntry = new CacheEntry(matchedRecipes, pantryIngredients, minPrepTime, maxPrepTime, aiTitles);
         cache.put(token, newEntry);
+        synchronized (newEntry) {
+            indexAiRecipes(token, newEntry, newEntry.recipes);
+        }
 
         System.out.println("Adding matched recipes to cache, count: " + newEntry.recipes.size()); // Log actual count
                                                                                                   // after de-dupe
@@ -86,20 +113,24 @@ public class RecipeCacheService {
 
         CacheEntry entry = cache.get(token);
         if (entry != null) {
-            List<RecipeDTO> recipesToAdd = newRecipes.stream()
-                    .filter(recipe -> recipe.getTitle() != null
-                            && !entry.allCachedTitles.contains(recipe.getTitle().toLowerCase()))
-                    .collect(Collectors.toList());
-
-            entry.recipes.addAll(recipesToAdd);
-            for (RecipeDTO recipe : recipesToAdd) {
-                entry.allCachedTitles.add(recipe.getTitle().toLowerCase());
-                if (fromAI && recipe.getTitle() != null) {
-                    entry.aiTitles.add(recipe.getTitle().toLowerCase());
+            synchronized (entry) {
+                List<RecipeDTO> recipesToAdd = newRecipes.stream()
+                        .filter(recipe -> recipe.getTitle() != null
+                                && !entry.allCachedTitles.contains(recipe.getTitle().toLowerCase()))
+                        .collect(Collectors.toList());
+
+                entry.recipes.addAll(recipesToAdd);
+                for (RecipeDTO recipe : recipesToAdd) {
+                    entry.allCachedTitles.add(recipe.getTitle().toLowerCase());
+                    if (fromAI && recipe.getTitle() != null) {
+                        entry.aiTitles.add(recipe.getTitle().toLowerCase());
+                    }
                 }
+                if (fromAI)
+                    indexAiRecipes(token, entry, recipesToAdd);
+                System.out.println("Appended " + recipesToAdd.size() + " unique recipes to cache token " + token
+                        + " fromAI=" + fromAI);
             }
-            System.out.println("Appended " + recipesToAdd.size() + " unique recipes to cache token " + token
-                    + " fromAI=" + fromAI);
         }
     }
 
@@ -115,32 +146,37 @@ public class RecipeCacheService {
         }
 
         List<RecipeDTO> nextBatch = new ArrayList<>();
+        entry.lastAccessedAt = System.currentTimeMillis();
 
-        while (nextBatch.size() < batchSize && entry.currentIndex < entry.recipes.size()) {
-            RecipeDTO recipe = entry.recipes.get(entry.currentIndex);
-            entry.currentIndex++; // Increment currentIndex regardless of whether it's added to batch
+        synchronized (entry) {
+            while (nextBatch.size() < batchSize && entry.currentIndex < entry.recipes.size()) {
+                RecipeDTO recipe = entry.recipes.get(entry.currentIndex);
+                entry.currentIndex++; // Increment currentIndex regardless of whether it's added to batch
 
-            if (recipe.getTitle() == null)
-                continue;
+                if (recipe.getTitle() == null)
+                    continue;
 
-            String titleKey = recipe.getTitle().toLowerCase();
+                String titleKey = recipe.getTitle().toLowerCase();
 
-            // Check if already presented in THIS batch or previous batches for this token
-            if (entry.presentedTitles.contains(titleKey))
-                continue;
+                // Check if already presented in THIS batch or previous batches for this token
+                if (entry.presentedTitles.contains(titleKey))
+                    continue;
 
-            boolean isAI = entry.aiTitles.contains(titleKey);
+                boolean isAI = entry.aiTitles.contains(titleKey);
 
-            if (isAI && entry.aiRecipesServed >= 5) {
-                // If AI limit reached, and this is an AI recipe, skip it.
-                // We don't increment entry.currentIndex here as it was already done.
-                continue;
-            }
+                if (isAI && entry.aiRecipesServed >= MAX_AI_RECIPES_PER_SESSION) {
+                    // If AI limit reached, and this is an AI recipe, skip it.
+                    // We don't increment entry.currentIndex here as it was already done.
+                    continue;
+                }
 
-            nextBatch.add(recipe);
-            entry.presentedTitles.add(titleKey);
-            if (isAI)
-                entry.aiRecipesServed++;
+                nextBatch.add(recipe);
+                entry.presentedTitles.add(titleKey);
+                if (isAI)
+                    entry.aiRecipesServed++;
+                if (entry.prefetchedTitles.remove(titleKey))
+                    meterRegistry.counter("pantrypilot.ai.prefetch", "result", "hit").increment();
+            }
         }
 
         System.out.println("Returning " + nextBatch.size() + " recipes for token " + token);
@@ -149,18 +185,30 @@ public class RecipeCacheService {
 
     public List<PantryIngredient> getCachedIngredients(String token) {
         CacheEntry entry = cache.get(token);
-        return entry != null ? new ArrayList<>(entry.pantryIngredients) : Collections.emptyList();
+        if (entry == null)
+            return Collections.emptyList();
+        synchronized (entry) {
+            return new ArrayList<>(entry.pantryIngredients);
+        }
     }
 
     public Set<String> getPresentedTitles(String token) {
         CacheEntry entry = cache.get(token);
-        return entry != null ? new HashSet<>(entry.presentedTitles) : Collections.emptySet();
+        if (entry == null)
+            return Collections.emptySet();
+        synchronized (entry) {
+            return new HashSet<>(entry.presentedTitles);
+        }
     }
 
     // NEW: Get all unique titles currently in the cache for this token
     public Set<String> getAllCachedTitles(String token) {
         CacheEntry entry = cache.get(token);
-        return entry != null ? new HashSet<>(entry.allCachedTitles) : Collections.emptySet();
+        if (entry == null)
+            return Collections.emptySet();
+        synchronized (entry) {
+            return new HashSet<>(entry.allCachedTitles);
+        }
     }
 
     public int getMinPrepTime(String token) {
@@ -174,18 +222,275 @@ public class RecipeCacheService {
     }
 
     public void removeToken(String token) {
-        if (token != null)
-            cache.remove(token);
+        if (token != null) {
+            CacheEntry entry = cache.remove(token);
+            if (entry != null) {
+                cancelPrefetch(entry);
+                unindexAiRecipes(token, entry);
+            }
+        }
     }
 
     public void evictExpiredEntries(long ttlMillis) {
         long now = System.currentTimeMillis();
-        cache.entrySet().removeIf(e -> (now - e.getValue().createdAt) > ttlMillis);
+        cache.entrySet().removeIf(e -> {
+            boolean expired = (now - e.getValue().lastAccessedAt) > ttlMillis;
+            if (expired) {
+                cancelPrefetch(e.getValue());
+                unindexAiRecipes(e.getKey(), e.getValue());
+            }
+            return expired;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${matching.session-evict-interval-ms:60000}")
+    public void evictExpiredSessions() {
+        evictExpiredEntries(sessionTtlMs);
+    }
+
+    /** Recipes cached for the session but not served yet. */
+    public int getRemainingCount(String token) {
+        CacheEntry entry = cache.get(token);
+        if (entry == null)
+            return 0;
+        synchronized (entry) {
+            return Math.max(0, entry.recipes.size() - entry.currentIndex);
+        }
+    }
+
+    /** AI recipes the session may still get: the budget minus served and already-cached ones. */
+    public int getAiBudgetLeft(String token) {
+        CacheEntry entry = cache.get(token);
+        if (entry == null)
+            return 0;
+        int pendingAI = 0;
+        synchronized (entry) {
+            for (int i = entry.currentIndex; i < entry.recipes.size(); i++) {
+                String title = entry.recipes.get(i).getTitle();
+                if (title != null && entry.aiTitles.contains(title.toLowerCase()))
+                    pendingAI++;
+            }
+        }
+        return Math.max(0, MAX_AI_RECIPES_PER_SESSION - entry.aiRecipesServed - pendingAI);
+    }
+
+    /**
+     * Submits {@code task} as the session's prefetch unless one is already
+     * running. Returns false if it wasn't scheduled.
+     */
+    public boolean schedulePrefetch(String token, ExecutorService executor, Runnable task) {
+        CacheEntry entry = cache.get(token);
+        if (entry == null)
+            return false;
+        synchronized (entry) {
+            if (entry.prefetch != null && !entry.prefetch.isDone())
+                return false;
+            try {
+                entry.prefetch = executor.submit(task);
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+        meterRegistry.counter("pantrypilot.ai.prefetch.scheduled").increment();
+        return true;
+    }
+
+    /** Waits for a running prefetch so its recipes can be served instead of generating again. */
+    public void awaitPrefetch(String token) throws InterruptedException {
+        CacheEntry entry = cache.get(token);
+        Future<?> prefetch = entry != null ? entry.prefetch : null;
+        if (prefetch == null || prefetch.isDone())
+            return;
+        try {
+            prefetch.get();
+        } catch (ExecutionException | CancellationException e) {
+            // Nothing added; the caller falls back to generating synchronously
+        }
+    }
+
+    /** Adds recipes generated in the background, remembering them for hit metrics. */
+    public void addPrefetchedRecipes(String token, List<RecipeDTO> recipes) {
+        CacheEntry entry = cache.get(token);
+        if (entry == null)
+            return;
+        synchronized (entry) {
+            addMoreRecipes(token, recipes, true);
+            for (RecipeDTO recipe : recipes) {
+                if (recipe.getTitle() != null)
+                    entry.prefetchedTitles.add(recipe.getTitle().toLowerCase());
+            }
+        }
+    }
+
+    private void cancelPrefetch(CacheEntry entry) {
+        Future<?> prefetch = entry.prefetch;
+        if (prefetch != null && !prefetch.isDone()) {
+            // Only interrupts the prefetch's wait; its attempts run on aiAttemptExecutor and
+            // are never interrupted (see RecipeMatcherService.fetchValidAIRecipes)
+            prefetch.cancel(true);
+            meterRegistry.counter("pantrypilot.ai.prefetch.cancelled").increment();
+        }
+    }
+
+    /** Remembers where ranked DB matching stopped so the next page can be fetched lazily. */
+    public void setDbCursor(String token, RankedMatch cursor, boolean exhausted) {
+        CacheEntry entry = cache.get(token);
+        if (entry != null) {
+            synchronized (entry) {
+                entry.dbCursor = cursor;
+                entry.dbExhausted = exhausted;
+            }
+        }
+    }
+
+    public RankedMatch getDbCursor(String token) {
+        CacheEntry entry = cache.get(token);
+        return entry != null ? entry.dbCursor : null;
+    }
+
+    public boolean isDbExhausted(String token) {
+        CacheEntry entry = cache.get(token);
+        return entry == null || entry.dbExhausted;
+    }
+
+    public boolean hasToken(String token) {
+        return token != null && cache.containsKey(token);
+    }
+
+    /** What {@link #withMatchState} hands its action: the session's pantry and hit counters. */
+    public interface MatchStateAction<T> {
+        T apply(List<PantryIngredient> pantryIngredients, PantryMatchState matchState,
+                int minPrepTime, int maxPrepTime);
+    }
+
+    /**
+     * Runs {@code action} on the session's pantry and hit counters (null until
+     * the first pantry edit) with the entry locked, so edits and the counter
+     * updates they make apply one at a time. The action may call
+     * {@link #applyPantryUpdate}. Returns null for an unknown token.
+     */
+    public <T> T withMatchState(String token, MatchStateAction<T> action) {
+        CacheEntry entry = token != null ? cache.get(token) : null;
+        if (entry == null)
+            return null;
+        synchronized (entry) {
+            return action.apply(new ArrayList<>(entry.pantryIngredients), entry.matchState,
+                    entry.minPrepTime, entry.maxPrepTime);
+        }
+    }
+
+    /**
+     * Applies a pantry edit to the session in place: swaps in the new pantry and
+     * hit counters, and replaces the DB recipes not served yet with the re-ranked
+     * ones. Served recipes and pending AI recipes are kept.
+     */
+    public void applyPantryUpdate(String token, List<PantryIngredient> pantryIngredients,
+            PantryMatchState matchState, List<RecipeDTO> rankedRecipes, RankedMatch cursor, boolean exhausted) {
+        CacheEntry entry = cache.get(token);
+        if (entry == null)
+            return;
+
+        entry.lastAccessedAt = System.currentTimeMillis();
+        // Prefetch threads append to the same entry concurrently
+        synchronized (entry) {
+            replacePending(entry, token, pantryIngredients, matchState, rankedRecipes, cursor, exhausted);
+        }
+    }
+
+    private void replacePending(CacheEntry entry, String token, List<PantryIngredient> pantryIngredients,
+            PantryMatchState matchState, List<RecipeDTO> rankedRecipes, RankedMatch cursor, boolean exhausted) {
+        List<RecipeDTO> pendingAI = new ArrayList<>();
+        for (int i = entry.currentIndex; i < entry.recipes.size(); i++) {
+            RecipeDTO recipe = entry.recipes.get(i);
+            String titleKey = recipe.getTitle() != null ? recipe.getTitle().toLowerCase() : null;
+            if (titleKey != null && entry.aiTitles.contains(titleKey)) {
+                pendingAI.add(recipe);
+            } else if (titleKey != null) {
+                entry.allCachedTitles.remove(titleKey);
+            }
+        }
+
+        List<RecipeDTO> recipes = new ArrayList<>(entry.recipes.subList(0, entry.currentIndex));
+        for (RecipeDTO recipe : rankedRecipes) {
+            if (recipe.getTitle() != null && entry.allCachedTitles.add(recipe.getTitle().toLowerCase()))
+                recipes.add(recipe);
+        }
+        recipes.addAll(pendingAI);
+
+        entry.recipes = recipes;
+        entry.pantryIngredients = new ArrayList<>(pantryIngredients);
+        entry.matchState = matchState;
+        entry.dbCursor = cursor;
+        entry.dbExhausted = exhausted;
+        System.out.println("Pantry updated for token " + token + ", " + (recipes.size() - entry.currentIndex)
+                + " recipes pending");
+    }
+
+    /**
+     * Replaces, in the sessions holding them, the recipes with these IDs by the
+     * given ones (a write-behind AI recipe whose title turned out to be taken).
+     * The list slots are swapped; DTOs already handed out stay as they were.
+     */
+    public void replaceRecipes(Map<Long, RecipeDTO> replacements) {
+        for (Map.Entry<Long, RecipeDTO> replacement : replacements.entrySet()) {
+            Set<String> tokens = tokensByAiRecipeId.remove(replacement.getKey());
+            if (tokens == null)
+                continue;
+            for (String token : tokens) {
+                CacheEntry entry = cache.get(token);
+                if (entry == null)
+                    continue;
+                synchronized (entry) {
+                    replaceRecipe(entry, replacement.getKey(), replacement.getValue());
+                }
+            }
+        }
+    }
+
+    private static void replaceRecipe(CacheEntry entry, Long id, RecipeDTO replacement) {
+        entry.recipes.replaceAll(recipe -> id.equals(recipe.getId()) ? replacement : recipe);
+        if (replacement.getTitle() != null) {
+            // Still counts against the session's AI budget under its new title
+            String titleKey = replacement.getTitle().toLowerCase();
+            entry.aiTitles.add(titleKey);
+            entry.allCachedTitles.add(titleKey);
+        }
+    }
+
+    /** Caller holds the entry's lock. */
+    private void indexAiRecipes(String token, CacheEntry entry, List<RecipeDTO> recipes) {
+        for (RecipeDTO recipe : recipes) {
+            if (recipe.getId() != null && recipe.getTitle() != null
+                    && entry.aiTitles.contains(recipe.getTitle().toLowerCase())) {
+                tokensByAiRecipeId.compute(recipe.getId(), (id, tokens) -> {
+                    Set<String> holders = tokens != null ? tokens : ConcurrentHashMap.newKeySet();
+                    holders.add(token);
+                    return holders;
+                });
+            }
+        }
+    }
+
+    private void unindexAiRecipes(String token, CacheEntry entry) {
+        synchronized (entry) {
+            for (RecipeDTO recipe : entry.recipes) {
+                if (recipe.getId() == null)
+                    continue;
+                tokensByAiRecipeId.computeIfPresent(recipe.getId(), (id, tokens) -> {
+                    tokens.remove(token);
+                    return tokens.isEmpty() ? null : tokens;
+                });
+            }
+        }
     }
 
     public boolean isExhausted(String token) {
         CacheEntry entry = cache.get(token);
-        return entry == null || entry.currentIndex >= entry.recipes.size();
+        if (entry == null)
+            return true;
+        synchronized (entry) {
+            return entry.currentIndex >= entry.recipes.size();
+        }
     }
 
     public int getAiGeneratedCount(String token) {
@@ -0,0 +1,25 @@
+package com.pantrypilot.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Source of AI recipe text. Output is streamed as chunks of a JSON array of
+ * recipes (title, instructions, prepTime, ingredients) for
+ * {@link RecipeAIService} to parse; chosen with {@code ai.provider}.
+ */
+public interface RecipeGenerator {
+
+    /**
+     * Streams generated text for the prompt to {@code onChunk}. The structured
+     * inputs the prompt was built from are passed along for generators that
+     * don't read prompts.
+     */
+    void generate(String prompt,
+                  List<Map<String, Object>> ingredients,
+                  int minPrepTime,
+                  int maxPrepTime,
+                  int count,
+                  Consumer<String> onChunk) throws InterruptedException;
+}
@@ -0,0 +1,867 @@
+package com.pantrypilot.service;
+
+import com.pantrypilot.model.PantryIngredient;
+import com.pantrypilot.model.Recipe;
+import com.pantrypilot.model.RecipeIngredient;
+import com.pantrypilot.repository.RecipeRepository;
+import com.pantrypilot.util.Unit;
+import com.pantrypilot.util.UnitConverter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Resident inverted index over the recipe catalog.
+ *
+ * Every recipe occupies a slot holding parallel int[] ingredient IDs (from
+ * {@link IngredientDictionary}), unit dimensions and double[] quantities both
+ * in base units and as entered (for cross-dimension comparisons). Each
+ * ingredient ID has a posting list of (slot, position) pairs, so matching a
+ * pantry is a merge of its posting lists into per-slot hit counters with plain
+ * int and double compares.
+ *
+ * Posting lists are in ascending slot order, so the catalog can be split into
+ * fixed slot ranges that are scored independently on {@code matchingPool}.
+ *
+ * Live slots are also kept ordered by prep time, so a prep time range is a
+ * contiguous slice. When that slice is cheaper to scan than the pantry's
+ * posting lists (narrow ranges, common ingredients), only the slice is scored.
+ *
+ * Each slot also carries a 256-bit signature of its ingredient IDs, used to
+ * reject recipes the pantry can't fully cover before any quantity is checked.
+ */
+@Service
+@RequiredArgsConstructor
+public class RecipeIndexService {
+
+    private static final double MATCH_THRESHOLD = 0.75;
+    // A slice entry costs about 3 posting entries: its slot's arrays are scattered (PrepRangeBenchmarkTest)
+    private static final int SLICE_ENTRY_COST = 3;
+    private static final int INITIAL_CAPACITY = 256;
+    // Catalog changes remembered for patching session counters; older counters are recounted
+    private static final int CHANGE_LOG_SIZE = 1024;
+    // 256-bit signatures: exact bitsets while the dictionary is small, Bloom-style beyond
+    private static final int SIGNATURE_WORDS = 4;
+    private static final int SIGNATURE_BITS = SIGNATURE_WORDS * 64;
+
+    private final RecipeRepository recipeRepository;
+    private final IngredientDictionary ingredientDictionary;
+    private final IngredientNameResolver ingredientNameResolver;
+    private final RecipeSimilarityIndex recipeSimilarityIndex;
+    private final ForkJoinPool matchingPool;
+
+    // Slots per partition when scoring in parallel
+    @Value("${matching.partition-size:8192}")
+    private int partitionSize;
+
+    // Catalogs smaller than this are scored on the calling thread
+    @Value("${matching.parallel-threshold:20000}")
+    private int parallelThreshold;
+
+    /** Growable list of (slot, position in recipe) pairs for one ingredient. */
+    private static final class Posting {
+        int[] slots = new int[4];
+        int[] positions = new int[4];
+        int size;
+
+        void add(int slot, int position) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            slots[size] = slot;
+            positions[size] = position;
+            size++;
+        }
+    }
+
+    // --- Slot storage; a dead slot has recipeIds[slot] == DEAD ---
+    private static final long DEAD = -1L;
+
+    private long[] recipeIds = new long[INITIAL_CAPACITY];
+    private int[] prepTimes = new int[INITIAL_CAPACITY];
+    private int[] totalIngredients = new int[INITIAL_CAPACITY];
+    private int[][] ingredientIds = new int[INITIAL_CAPACITY][];
+    private Unit.Dimension[][] dimensions = new Unit.Dimension[INITIAL_CAPACITY][];
+    private double[][] baseQuantities = new double[INITIAL_CAPACITY][];
+    private double[][] rawQuantities = new double[INITIAL_CAPACITY][];
+    private int slotCount = 0;
+    private int deadSlots = 0;
+    private long liveIngredientEntries = 0; // for cost estimates
+
+    // Required-ingredient signature per slot, SIGNATURE_WORDS longs each
+    private long[] signatures = new long[INITIAL_CAPACITY * SIGNATURE_WORDS];
+
+    // Live slots sorted by ((long) prepTime << 32) | slot
+    private long[] prepOrder = new long[INITIAL_CAPACITY];
+    private int prepOrderSize = 0;
+
+    private final Map<Long, Integer> slotByRecipeId = new HashMap<>();
+    // ingredient ID -> posting list
+    private final List<Posting> postings = new ArrayList<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean loaded = false;
+    // Bumped on every catalog change so session hit counters know when they're stale
+    private volatile long version = 0;
+    // Recipe ID added, replaced or removed at each version, at changeLog[version % CHANGE_LOG_SIZE]
+    private final long[] changeLog = new long[CHANGE_LOG_SIZE];
+    // Counters older than this (a rebuild or clear) can't be patched
+    private long resetVersion = 0;
+
+    /** Loads the whole catalog once the application is up. */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        List<Recipe> all = recipeRepository.findAllWithIngredients();
+
+        lock.writeLock().lock();
+        try {
+            resetInternal();
+            for (Recipe recipe : all) {
+                addInternal(recipe);
+            }
+            rebuildPrepOrder();
+            loaded = true;
+            resetVersion = ++version;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // After the ingredient names are interned, so signatures use their IDs
+        recipeSimilarityIndex.clear();
+        all.forEach(recipeSimilarityIndex::add);
+        System.out.println("Recipe index built with " + all.size() + " recipes, "
+                + ingredientDictionary.size() + " distinct ingredients");
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /** Adds or replaces a recipe in the index. Ingredients must be initialized. */
+    public void addRecipe(Recipe recipe) {
+        if (recipe == null || recipe.getId() == null)
+            return;
+
+        lock.writeLock().lock();
+        try {
+            removeInternal(recipe.getId());
+            int slot = addInternal(recipe);
+            if (slot >= 0)
+                insertPrepOrder(slot);
+            // Replacing tombstones the old slot, so repeated replacements need compacting too
+            compactIfSparse();
+            logChange(recipe.getId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        recipeSimilarityIndex.add(recipe);
+    }
+
+    public void removeRecipe(Long recipeId) {
+        if (recipeId == null)
+            return;
+
+        lock.writeLock().lock();
+        try {
+            removeInternal(recipeId);
+            compactIfSparse();
+            logChange(recipeId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        recipeSimilarityIndex.remove(recipeId);
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            resetInternal();
+            resetVersion = ++version;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        recipeSimilarityIndex.clear();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /** Slots in use, dead ones included until the next compaction. */
+    int slotCount() {
+        lock.readLock().lock();
+        try {
+            return slotCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Caller holds the write lock. */
+    private void logChange(long recipeId) {
+        version++;
+        changeLog[(int) (version % CHANGE_LOG_SIZE)] = recipeId;
+    }
+
+    /**
+     * Returns IDs of recipes within the prep time range where at least 75% of the
+     * ingredients are covered by the pantry (name + quantity).
+     */
+    public List<Long> findMatchingRecipeIds(int minPrepTime, int maxPrepTime,
+            List<PantryIngredient> pantryIngredients) {
+
+        List<Long> matched = new ArrayList<>();
+        for (RankedMatch match : findTopMatches(minPrepTime, maxPrepTime, pantryIngredients, Integer.MAX_VALUE, null)) {
+            matched.add(match.getRecipeId());
+        }
+        return matched;
+    }
+
+    /**
+     * IDs of recipes the pantry fully covers: every ingredient present in enough
+     * quantity. Each slot's signature is checked against the pantry's first, so
+     * most recipes are rejected with a few ANDs and only survivors get the exact
+     * quantity check.
+     */
+    public List<Long> findCompleteMatchIds(List<PantryIngredient> pantryIngredients) {
+        PantryLookup pantry = PantryLookup.of(pantryIngredients, ingredientNameResolver);
+        long[] pantrySignature = new long[SIGNATURE_WORDS];
+        for (int p = 0; p < pantry.size(); p++) {
+            setSignatureBit(pantrySignature, 0, pantry.idAt(p));
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Long> matched = new ArrayList<>();
+            for (RankedMatch match : scorePartitioned(0, slotCount, Integer.MAX_VALUE,
+                    (from, to) -> completeMatchesInRange(pantry, pantrySignature, from, to))) {
+                matched.add(match.getRecipeId());
+            }
+            return matched;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** How a prep time range is scored; tests and benchmarks can force either way. */
+    enum ScoringPath {
+        CHEAPER, SLICE, POSTING_LISTS
+    }
+
+    /**
+     * Returns the best {@code k} qualifying recipes ranked by {@link RankedMatch#BEST_FIRST},
+     * considering only those ranked strictly after {@code after} (null for the first
+     * page). Keeps a bounded heap, so memory is O(k) beyond the hit counters.
+     */
+    public List<RankedMatch> findTopMatches(int minPrepTime, int maxPrepTime,
+            List<PantryIngredient> pantryIngredients, int k, RankedMatch after) {
+        return findTopMatches(minPrepTime, maxPrepTime, pantryIngredients, k, after, ScoringPath.CHEAPER);
+    }
+
+    List<RankedMatch> findTopMatches(int minPrepTime, int maxPrepTime,
+            List<PantryIngredient> pantryIngredients, int k, RankedMatch after, ScoringPath path) {
+
+        if (k <= 0)
+            return new ArrayList<>();
+
+        PantryLookup pantry = PantryLookup.of(pantryIngredients, ingredientNameResolver);
+
+        lock.readLock().lock();
+        try {
+            // The prep time range as a slice of prepOrder
+            int lo = firstInPrepOrder(minPrepTime, false);
+            int hi = firstInPrepOrder(maxPrepTime, true);
+            if (lo >= hi)
+                return new ArrayList<>();
+
+            // Pick whichever touches fewer entries: the slice's ingredient lists or
+            // the pantry's posting lists
+            long postingWork = 0;
+            for (int p = 0; p < pantry.size(); p++) {
+                Posting posting = postingOf(pantry.idAt(p));
+                if (posting != null)
+                    postingWork += posting.size;
+            }
+            int liveSlots = slotCount - deadSlots;
+            double avgIngredients = liveSlots == 0 ? 0 : (double) liveIngredientEntries / liveSlots;
+
+            boolean sliceIsCheaper = (hi - lo) * avgIngredients * SLICE_ENTRY_COST < postingWork;
+            if (path == ScoringPath.SLICE || (path == ScoringPath.CHEAPER && sliceIsCheaper)) {
+                return scorePartitioned(lo, hi, k,
+                        (from, to) -> topMatchesInSlice(pantry, k, after, from, to));
+            }
+            return scorePartitioned(0, slotCount, k,
+                    (from, to) -> topMatchesInRange(pantry, minPrepTime, maxPrepTime, k, after, from, to));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Per-recipe hit counters for the pantry, to be kept current with {@link #applyPantryChange}. */
+    public PantryMatchState countHits(int minPrepTime, int maxPrepTime, List<PantryIngredient> pantryIngredients) {
+        PantryLookup pantry = PantryLookup.of(pantryIngredients, ingredientNameResolver);
+
+        lock.readLock().lock();
+        try {
+            PantryMatchState state = new PantryMatchState(version, minPrepTime, maxPrepTime);
+            countInto(state, pantry);
+            return state;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Updates the counters for one pantry entry changing from {@code before} to
+     * {@code after} (either may be null for an add or a remove). Only recipes in
+     * that ingredient's posting list are touched.
+     */
+    public void applyPantryChange(PantryMatchState state, int minPrepTime, int maxPrepTime,
+            PantryIngredient before, PantryIngredient after) {
+
+        lock.readLock().lock();
+        try {
+            synchronized (state) {
+                if (before != null) {
+                    int id = ingredientNameResolver.resolve(before.getIngredientName());
+                    addHits(state, minPrepTime, maxPrepTime, id, before.getParsedUnit().getDimension(),
+                            before.getBaseQuantity(), before.getQuantity(), -1);
+                }
+                if (after != null) {
+                    int id = ingredientNameResolver.resolve(after.getIngredientName());
+                    addHits(state, minPrepTime, maxPrepTime, id, after.getParsedUnit().getDimension(),
+                            after.getBaseQuantity(), after.getQuantity(), 1);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Brings a session's counters up to the current index version for the pantry
+     * they count. Only recipes added, replaced or removed since are rescored; if
+     * those are no longer in the change log (or the index was rebuilt) the
+     * counters are recounted in place. The caller keeps the pantry from changing
+     * meanwhile.
+     */
+    public void refresh(PantryMatchState state, List<PantryIngredient> pantryIngredients) {
+        PantryLookup pantry = PantryLookup.of(pantryIngredients, ingredientNameResolver);
+
+        lock.readLock().lock();
+        try {
+            synchronized (state) {
+                long from = state.getIndexVersion();
+                if (from == version)
+                    return;
+                if (from < resetVersion || version - from > CHANGE_LOG_SIZE) {
+                    state.clear(version);
+                    countInto(state, pantry);
+                    return;
+                }
+                for (long v = from + 1; v <= version; v++) {
+                    long recipeId = changeLog[(int) (v % CHANGE_LOG_SIZE)];
+                    Integer slot = slotByRecipeId.get(recipeId);
+                    int hits = slot != null && prepTimes[slot] >= state.getMinPrepTime()
+                            && prepTimes[slot] <= state.getMaxPrepTime() ? slotHits(pantry, slot) : 0;
+                    state.setHits(recipeId, hits, hits > 0 ? matchOf(slot, hits) : null);
+                }
+                state.setIndexVersion(version);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Best {@code k} qualifying recipes from a session's counters, ranked after
+     * {@code after}. The counters keep their matches in rank order, so this costs
+     * O(k log n); {@link #refresh} them first so catalog changes are reflected.
+     */
+    public List<RankedMatch> findTopMatches(PantryMatchState state, int k, RankedMatch after) {
+        if (k <= 0)
+            return new ArrayList<>();
+
+        synchronized (state) {
+            return state.top(k, after);
+        }
+    }
+
+    // --- Matching helpers (caller holds the read lock) ---
+
+    /** Adds {@code sign} to every in-range recipe whose need for the ingredient the amount covers. */
+    private void addHits(PantryMatchState state, int minPrepTime, int maxPrepTime, int ingredientId,
+            Unit.Dimension dimension, double baseQuantity, double rawQuantity, int sign) {
+        if (ingredientId < 0)
+            return;
+        Posting posting = postingOf(ingredientId);
+        if (posting == null)
+            return;
+
+        for (int i = 0; i < posting.size; i++) {
+            int slot = posting.slots[i];
+            int pos = posting.positions[i];
+            if (recipeIds[slot] == DEAD || prepTimes[slot] < minPrepTime || prepTimes[slot] > maxPrepTime)
+                continue;
+            if (UnitConverter.isEnough(dimension, baseQuantity, rawQuantity, dimensions[slot][pos],
+                    baseQuantities[slot][pos], rawQuantities[slot][pos])) {
+                int hits = state.hits(recipeIds[slot]) + sign;
+                state.setHits(recipeIds[slot], hits, matchOf(slot, hits));
+            }
+        }
+    }
+
+    /** Counts every in-range recipe into empty counters in one posting list merge. */
+    private void countInto(PantryMatchState state, PantryLookup pantry) {
+        HitCounts counts = countHits(pantry, state.getMinPrepTime(), state.getMaxPrepTime(), 0, slotCount);
+        try {
+            for (int i = 0; i < counts.touchedCount; i++) {
+                int slot = counts.touched[i];
+                int hits = counts.hits[slot];
+                state.setHits(recipeIds[slot], hits, matchOf(slot, hits));
+            }
+        } finally {
+            counts.release();
+        }
+    }
+
+    private interface RangeScorer {
+        List<RankedMatch> score(int from, int to);
+    }
+
+    /**
+     * Scores [from, to) on the calling thread if it is small, otherwise as fixed
+     * partitions on the matching pool, merging the per-partition top k lists.
+     * Workers only read; the write lock can't be taken while we hold the read lock.
+     */
+    private List<RankedMatch> scorePartitioned(int from, int to, int k, RangeScorer scorer) {
+        if (to - from < parallelThreshold) {
+            return scorer.score(from, to);
+        }
+
+        List<ForkJoinTask<List<RankedMatch>>> tasks = new ArrayList<>();
+        for (int start = from; start < to; start += partitionSize) {
+            int partitionStart = start;
+            int partitionEnd = Math.min(start + partitionSize, to);
+            tasks.add(matchingPool.submit(() -> scorer.score(partitionStart, partitionEnd)));
+        }
+
+        List<RankedMatch> merged = new ArrayList<>();
+        for (ForkJoinTask<List<RankedMatch>> task : tasks) {
+            merged.addAll(task.join());
+        }
+        merged.sort(RankedMatch.BEST_FIRST);
+        return merged.size() > k ? new ArrayList<>(merged.subList(0, k)) : merged;
+    }
+
+    /** Top k qualifying matches among slots [from, to), via the pantry's posting lists. */
+    private List<RankedMatch> topMatchesInRange(PantryLookup pantry, int minPrepTime, int maxPrepTime,
+            int k, RankedMatch after, int from, int to) {
+
+        HitCounts counts = countHits(pantry, minPrepTime, maxPrepTime, from, to);
+        try {
+            PriorityQueue<RankedMatch> heap = newHeap(k);
+            for (int i = 0; i < counts.touchedCount; i++) {
+                int slot = counts.touched[i];
+                offer(heap, k, after, slot, counts.hits[slot - from]);
+            }
+            return sortedBestFirst(heap);
+        } finally {
+            counts.release();
+        }
+    }
+
+    /** Top k qualifying matches among prepOrder[from, to), scoring each slot directly. */
+    private List<RankedMatch> topMatchesInSlice(PantryLookup pantry, int k, RankedMatch after, int from, int to) {
+        PriorityQueue<RankedMatch> heap = newHeap(k);
+        for (int i = from; i < to; i++) {
+            int slot = (int) prepOrder[i];
+            int hits = slotHits(pantry, slot);
+            if (hits > 0)
+                offer(heap, k, after, slot, hits);
+        }
+        return sortedBestFirst(heap);
+    }
+
+    /** Ingredients of a live slot the pantry covers, checked from the slot's side. */
+    private int slotHits(PantryLookup pantry, int slot) {
+        int[] ids = ingredientIds[slot];
+        int hits = 0;
+        for (int pos = 0; pos < ids.length; pos++) {
+            int p = pantry.indexOf(ids[pos]);
+            if (p >= 0 && UnitConverter.isEnough(pantry.dimensionAt(p), pantry.baseQuantityAt(p),
+                    pantry.rawQuantityAt(p), dimensions[slot][pos], baseQuantities[slot][pos],
+                    rawQuantities[slot][pos])) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    /** Fully covered recipes among slots [from, to). */
+    private List<RankedMatch> completeMatchesInRange(PantryLookup pantry, long[] pantrySignature, int from, int to) {
+        List<RankedMatch> matches = new ArrayList<>();
+        for (int slot = from; slot < to; slot++) {
+            if (recipeIds[slot] == DEAD)
+                continue;
+
+            int offset = slot * SIGNATURE_WORDS;
+            long outside = 0;
+            for (int w = 0; w < SIGNATURE_WORDS; w++) {
+                outside |= signatures[offset + w] & ~pantrySignature[w];
+            }
+            if (outside != 0)
+                continue;
+
+            // Unnamed ingredients aren't indexed and can never be covered
+            int[] ids = ingredientIds[slot];
+            if (ids.length != totalIngredients[slot])
+                continue;
+
+            boolean covered = true;
+            for (int pos = 0; pos < ids.length && covered; pos++) {
+                int p = pantry.indexOf(ids[pos]);
+                covered = p >= 0 && UnitConverter.isEnough(pantry.dimensionAt(p), pantry.baseQuantityAt(p),
+                        pantry.rawQuantityAt(p), dimensions[slot][pos], baseQuantities[slot][pos],
+                        rawQuantities[slot][pos]);
+            }
+            if (covered)
+                matches.add(new RankedMatch(recipeIds[slot], 1.0, 0, prepTimes[slot]));
+        }
+        return matches;
+    }
+
+    /** Min-heap on rank: the head is the worst of the current top k. */
+    private static PriorityQueue<RankedMatch> newHeap(int k) {
+        return new PriorityQueue<>(Math.min(k, 1024) + 1, RankedMatch.BEST_FIRST.reversed());
+    }
+
+    private void offer(PriorityQueue<RankedMatch> heap, int k, RankedMatch after, int slot, int hits) {
+        RankedMatch match = matchOf(slot, hits);
+        if (match == null)
+            return;
+        if (after != null && RankedMatch.BEST_FIRST.compare(match, after) <= 0)
+            return;
+
+        if (heap.size() < k) {
+            heap.add(match);
+        } else if (RankedMatch.BEST_FIRST.compare(match, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(match);
+        }
+    }
+
+    private static List<RankedMatch> sortedBestFirst(PriorityQueue<RankedMatch> heap) {
+        List<RankedMatch> top = new ArrayList<>(heap);
+        top.sort(RankedMatch.BEST_FIRST);
+        return top;
+    }
+
+    /**
+     * Hit counters for slots [from, to) plus the slots that got at least one hit.
+     * Each thread reuses one, grown to the largest range it has scored, and
+     * {@link #release} zeroes only the touched counters, so a request costs
+     * O(hits) instead of allocating and clearing O(range) ints.
+     */
+    private static final class HitCounts {
+        int from;
+        int[] hits = new int[0];
+        int[] touched = new int[0];
+        int touchedCount;
+        boolean inUse;
+
+        HitCounts acquire(int from, int to) {
+            if (hits.length < to - from) {
+                hits = new int[to - from];
+                touched = new int[to - from];
+            }
+            this.from = from;
+            inUse = true;
+            return this;
+        }
+
+        void release() {
+            for (int i = 0; i < touchedCount; i++) {
+                hits[touched[i] - from] = 0;
+            }
+            touchedCount = 0;
+            inUse = false;
+        }
+    }
+
+    private static final ThreadLocal<HitCounts> HIT_COUNTS = ThreadLocal.withInitial(HitCounts::new);
+
+    /**
+     * Merges the posting lists of all pantry ingredients into hit counters for
+     * slots [from, to). The caller must {@link HitCounts#release} them.
+     */
+    private HitCounts countHits(PantryLookup pantry, int minPrepTime, int maxPrepTime, int from, int to) {
+        HitCounts counts = HIT_COUNTS.get();
+        // A pool thread joining another partition could re-enter while its counters are live
+        if (counts.inUse)
+            counts = new HitCounts();
+        counts.acquire(from, to);
+
+        for (int p = 0; p < pantry.size(); p++) {
+            Posting posting = postingOf(pantry.idAt(p));
+            if (posting == null)
+                continue;
+
+            Unit.Dimension availableDimension = pantry.dimensionAt(p);
+            double availableBase = pantry.baseQuantityAt(p);
+            double availableRaw = pantry.rawQuantityAt(p);
+            for (int i = firstAtOrAfter(posting, from); i < posting.size; i++) {
+                int slot = posting.slots[i];
+                if (slot >= to)
+                    break;
+                if (recipeIds[slot] == DEAD)
+                    continue;
+                if (prepTimes[slot] < minPrepTime || prepTimes[slot] > maxPrepTime)
+                    continue;
+                int pos = posting.positions[i];
+                if (!UnitConverter.isEnough(availableDimension, availableBase, availableRaw,
+                        dimensions[slot][pos], baseQuantities[slot][pos], rawQuantities[slot][pos]))
+                    continue;
+
+                if (counts.hits[slot - from]++ == 0) {
+                    counts.touched[counts.touchedCount++] = slot;
+                }
+            }
+        }
+        return counts;
+    }
+
+    private Posting postingOf(int ingredientId) {
+        return ingredientId < postings.size() ? postings.get(ingredientId) : null;
+    }
+
+    /**
+     * Index of the first prepOrder entry with prep time >= {@code prepTime}, or
+     * > {@code prepTime} when {@code after} is set.
+     */
+    private int firstInPrepOrder(int prepTime, boolean after) {
+        int low = 0;
+        int high = prepOrderSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int midTime = (int) (prepOrder[mid] >> 32);
+            if (midTime < prepTime || (after && midTime == prepTime)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Index of the first posting entry with slot >= {@code slot}. */
+    private static int firstAtOrAfter(Posting posting, int slot) {
+        if (slot == 0)
+            return 0;
+        int low = 0;
+        int high = posting.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (posting.slots[mid] < slot) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** The slot ranked with {@code hits}, or null if that falls short of the threshold. */
+    private RankedMatch matchOf(int slot, int hits) {
+        if ((double) hits / totalIngredients[slot] < MATCH_THRESHOLD)
+            return null;
+        return new RankedMatch(recipeIds[slot], (double) hits / totalIngredients[slot],
+                totalIngredients[slot] - hits, prepTimes[slot]);
+    }
+
+    // --- Helper methods (caller holds the write lock) ---
+
+    /** Returns the new slot, or -1 if the recipe has nothing to index. */
+    private int addInternal(Recipe recipe) {
+        if (recipe.getIngredients() == null || recipe.getIngredients().isEmpty())
+            return -1;
+
+        int[] ids = new int[recipe.getIngredients().size()];
+        Unit.Dimension[] dims = new Unit.Dimension[ids.length];
+        double[] base = new double[ids.length];
+        double[] raw = new double[ids.length];
+        int size = 0;
+        for (RecipeIngredient ri : recipe.getIngredients()) {
+            if (ri.getIngredientName() == null)
+                continue;
+            ids[size] = ingredientNameResolver.intern(ri.getIngredientName());
+            dims[size] = ri.getParsedUnit().getDimension();
+            base[size] = ri.getBaseQuantity();
+            raw[size] = ri.getQuantity();
+            size++;
+        }
+        if (size == 0)
+            return -1;
+
+        return addSlot(recipe.getId(), recipe.getPrepTime(), recipe.getIngredients().size(),
+                Arrays.copyOf(ids, size), Arrays.copyOf(dims, size),
+                Arrays.copyOf(base, size), Arrays.copyOf(raw, size));
+    }
+
+    private int addSlot(long recipeId, int prepTime, int total, int[] ids,
+            Unit.Dimension[] dims, double[] base, double[] raw) {
+        if (slotCount == recipeIds.length) {
+            int capacity = slotCount * 2;
+            recipeIds = Arrays.copyOf(recipeIds, capacity);
+            prepTimes = Arrays.copyOf(prepTimes, capacity);
+            totalIngredients = Arrays.copyOf(totalIngredients, capacity);
+            ingredientIds = Arrays.copyOf(ingredientIds, capacity);
+            dimensions = Arrays.copyOf(dimensions, capacity);
+            baseQuantities = Arrays.copyOf(baseQuantities, capacity);
+            rawQuantities = Arrays.copyOf(rawQuantities, capacity);
+            signatures = Arrays.copyOf(signatures, capacity * SIGNATURE_WORDS);
+        }
+
+        int slot = slotCount++;
+        recipeIds[slot] = recipeId;
+        prepTimes[slot] = prepTime;
+        totalIngredients[slot] = total;
+        ingredientIds[slot] = ids;
+        dimensions[slot] = dims;
+        baseQuantities[slot] = base;
+        rawQuantities[slot] = raw;
+        slotByRecipeId.put(recipeId, slot);
+        liveIngredientEntries += ids.length;
+        Arrays.fill(signatures, slot * SIGNATURE_WORDS, (slot + 1) * SIGNATURE_WORDS, 0L);
+        for (int id : ids) {
+            setSignatureBit(signatures, slot * SIGNATURE_WORDS, id);
+        }
+
+        for (int pos = 0; pos < ids.length; pos++) {
+            while (postings.size() <= ids[pos]) {
+                postings.add(null);
+            }
+            Posting posting = postings.get(ids[pos]);
+            if (posting == null) {
+                posting = new Posting();
+                postings.set(ids[pos], posting);
+            }
+            posting.add(slot, pos);
+        }
+        return slot;
+    }
+
+    /** Sets the ingredient's bit; IDs past the bitset width are hashed onto it. */
+    private static void setSignatureBit(long[] words, int offset, int ingredientId) {
+        int bit = ingredientId < SIGNATURE_BITS
+                ? ingredientId
+                : ((ingredientId * 0x9E3779B9) >>> 24) & (SIGNATURE_BITS - 1);
+        words[offset + (bit >>> 6)] |= 1L << bit;
+    }
+
+    private static long prepOrderKey(int prepTime, int slot) {
+        return ((long) prepTime << 32) | slot;
+    }
+
+    private void insertPrepOrder(int slot) {
+        if (prepOrderSize == prepOrder.length) {
+            prepOrder = Arrays.copyOf(prepOrder, prepOrderSize * 2);
+        }
+        long key = prepOrderKey(prepTimes[slot], slot);
+        int at = Arrays.binarySearch(prepOrder, 0, prepOrderSize, key);
+        at = at < 0 ? -at - 1 : at;
+        System.arraycopy(prepOrder, at, prepOrder, at + 1, prepOrderSize - at);
+        prepOrder[at] = key;
+        prepOrderSize++;
+    }
+
+    private void removePrepOrder(int slot) {
+        int at = Arrays.binarySearch(prepOrder, 0, prepOrderSize, prepOrderKey(prepTimes[slot], slot));
+        if (at < 0)
+            return;
+        System.arraycopy(prepOrder, at + 1, prepOrder, at, prepOrderSize - at - 1);
+        prepOrderSize--;
+    }
+
+    /** Bulk (re)build after loading or compacting: one sort instead of n inserts. */
+    private void rebuildPrepOrder() {
+        prepOrder = new long[Math.max(INITIAL_CAPACITY, slotCount)];
+        prepOrderSize = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (recipeIds[slot] != DEAD)
+                prepOrder[prepOrderSize++] = prepOrderKey(prepTimes[slot], slot);
+        }
+        Arrays.sort(prepOrder, 0, prepOrderSize);
+    }
+
+    /** Tombstones the slot; posting entries are skipped until the next compaction. */
+    private void removeInternal(Long recipeId) {
+        Integer slot = slotByRecipeId.remove(recipeId);
+        if (slot == null)
+            return;
+
+        removePrepOrder(slot);
+        liveIngredientEntries -= ingredientIds[slot].length;
+        recipeIds[slot] = DEAD;
+        ingredientIds[slot] = null;
+        dimensions[slot] = null;
+        baseQuantities[slot] = null;
+        rawQuantities[slot] = null;
+        deadSlots++;
+    }
+
+    private void compactIfSparse() {
+        if (deadSlots > INITIAL_CAPACITY && deadSlots > slotCount / 2) {
+            compactInternal();
+        }
+    }
+
+    /** Re-packs live slots and rebuilds the posting lists. */
+    private void compactInternal() {
+        long[] oldIds = recipeIds;
+        int[] oldPrep = prepTimes;
+        int[] oldTotals = totalIngredients;
+        int[][] oldIngredients = ingredientIds;
+        Unit.Dimension[][] oldDimensions = dimensions;
+        double[][] oldBase = baseQuantities;
+        double[][] oldRaw = rawQuantities;
+        int oldCount = slotCount;
+
+        resetInternal();
+        for (int slot = 0; slot < oldCount; slot++) {
+            if (oldIds[slot] != DEAD) {
+                addSlot(oldIds[slot], oldPrep[slot], oldTotals[slot], oldIngredients[slot],
+                        oldDimensions[slot], oldBase[slot], oldRaw[slot]);
+            }
+        }
+        rebuildPrepOrder();
+    }
+
+    private void resetInternal() {
+        recipeIds = new long[INITIAL_CAPACITY];
+        prepTimes = new int[INITIAL_CAPACITY];
+        totalIngredients = new int[INITIAL_CAPACITY];
+        ingredientIds = new int[INITIAL_CAPACITY][];
+        dimensions = new Unit.Dimension[INITIAL_CAPACITY][];
+        baseQuantities = new double[INITIAL_CAPACITY][];
+        rawQuantities = new double[INITIAL_CAPACITY][];
+        signatures = new long[INITIAL_CAPACITY * SIGNATURE_WORDS];
+        slotCount = 0;
+        deadSlots = 0;
+        liveIngredientEntries = 0;
+        prepOrder = new long[INITIAL_CAPACITY];
+        prepOrderSize = 0;
+        slotByRecipeId.clear();
+        postings.clear();
+    }
+}
@@ -9,11 +9,20 @@ import com.pantrypilot.repository.PantryIngredientRepository;
 import com.pantrypilot.repository.RecipeRepository;
 import com.pantrypilot.util.UnitConverter;
 
-import org.springframework.transaction.annotation.Transactional;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,10 +35,46 @@ public class RecipeMatcherService {
     private final RecipeAIService recipeAIService;
     private final RecipeCacheService recipeCacheService;
     private final IngredientImageService ingredientImageService;
+    private final MatchResultCache matchResultCache;
+    private final RecipeIndexService recipeIndexService;
+    private final RecipeSimilarityIndex recipeSimilarityIndex;
+    private final IngredientNameResolver ingredientNameResolver;
+    private final ExecutorService aiPrefetchExecutor;
+    private final ExecutorService aiAttemptExecutor;
+    private final AiAttemptStats attemptStats;
+    private final MeterRegistry meterRegistry;
 
     private static final int MAX_AI_RETRIES = 3;
 
-    @Transactional
+    // Ranked DB matches fetched per page; later pages are fetched as the session needs them
+    @Value("${matching.top-k:12}")
+    private int topK;
+
+    // Start generating AI recipes in the background once fewer than this many are cached
+    @Value("${matching.prefetch-low-water-mark:3}")
+    private int prefetchLowWaterMark;
+
+    // Hedging: start a second attempt once the first runs past this latency percentile
+    @Value("${ai.hedge.enabled:true}")
+    private boolean hedgingEnabled;
+
+    @Value("${ai.hedge.percentile:0.9}")
+    private double hedgePercentile;
+
+    // Hedge delay until enough latencies have been observed
+    @Value("${ai.hedge.default-delay-ms:15000}")
+    private long hedgeDefaultDelayMs;
+
+    // Start two attempts at once when the recent rejection rate is at least this
+    @Value("${ai.parallel.rejection-threshold:0.5}")
+    private double parallelRejectionThreshold;
+
+    // Upper bound on recipes requested in one Gemini call when over-fetching
+    @Value("${ai.max-recipes-per-call:8}")
+    private int maxRecipesPerCall;
+
+    // Not transactional: each DB step is its own short read, so no connection is
+    // held while Gemini is generating.
     public String matchRecipesWithCache(
             List<PantryIngredient> pantryIngredients,
             int minPrepTime,
@@ -39,19 +84,34 @@ public class RecipeMatcherService {
         if (pantryIngredients == null)
             pantryIngredients = Collections.emptyList();
 
-        List<Recipe> matchedRecipes = recipeService.getRecipesByPrepTimeAndIngredients(
-                minPrepTime, maxPrepTime, pantryIngredients);
+        // Same pantry + prep range seen before (by anyone): reuse its results
+        String fingerprint = MatchResultCache.fingerprint(pantryIngredients, minPrepTime, maxPrepTime);
+        MatchResultCache.CachedMatch cached = matchResultCache.get(fingerprint);
+        if (cached != null) {
+            String token = recipeCacheService.addMatchedRecipes(cached.getRecipes(), pantryIngredients, minPrepTime,
+                    maxPrepTime, cached.getAiTitles());
+            recipeCacheService.setDbCursor(token, cached.getDbCursor(), cached.isDbExhausted());
+            return token;
+        }
+
+        DbPage dbPage = firstDbPage(pantryIngredients, minPrepTime, maxPrepTime);
+        RankedMatch dbCursor = dbPage.cursor();
+        boolean dbExhausted = dbPage.exhausted();
 
-        Set<String> initialDbTitles = matchedRecipes.stream()
-                .map(Recipe::getTitle)
+        // Narrow projection only: instructions are loaded once a recipe is served
+        List<RecipeDTO> dtoRecipes = recipeService.getRecipeSummaries(dbPage.recipeIds());
+        dtoRecipes.forEach(this::enrichImages);
+
+        Set<String> initialDbTitles = dtoRecipes.stream()
+                .map(RecipeDTO::getTitle)
                 .filter(Objects::nonNull)
                 .map(String::toLowerCase)
                 .collect(Collectors.toSet());
 
         Set<String> aiTitlesGeneratedInThisCall = new HashSet<>();
 
-        if (matchedRecipes.size() < batchSize) {
-            int missing = batchSize - matchedRecipes.size();
+        if (dtoRecipes.size() < batchSize) {
+            int missing = batchSize - dtoRecipes.size();
 
             List<Recipe> aiRecipes = fetchValidAIRecipes(
                     pantryIngredients,
@@ -60,32 +120,116 @@ public class RecipeMatcherService {
                     initialDbTitles,
                     missing);
 
-            matchedRecipes.addAll(aiRecipes);
+            aiRecipes.stream().map(this::toDto).forEach(dtoRecipes::add);
             aiTitlesGeneratedInThisCall.addAll(aiRecipes.stream()
                     .map(r -> r.getTitle().toLowerCase())
                     .collect(Collectors.toList()));
         }
 
-        List<RecipeDTO> dtoRecipes = matchedRecipes.stream()
-                .map(recipe -> {
-                    List<IngredientDTO> enrichedIngredients = recipe.getIngredients().stream()
-                            .map(ri -> {
-                                IngredientDTO dto = new IngredientDTO(ri);
-                                String url = ingredientImageService.getImageUrl(dto.getIngredientName());
-                                dto.setImageUrl(url);
-                                return dto;
-                            })
-                            .collect(Collectors.toList());
-
-                    return new RecipeDTO(recipe, enrichedIngredients);
-                })
-                .collect(Collectors.toList());
+        matchResultCache.put(fingerprint, dtoRecipes, aiTitlesGeneratedInThisCall, dbCursor, dbExhausted);
 
-        return recipeCacheService.addMatchedRecipes(dtoRecipes, pantryIngredients, minPrepTime, maxPrepTime,
+        String token = recipeCacheService.addMatchedRecipes(dtoRecipes, pantryIngredients, minPrepTime, maxPrepTime,
                 aiTitlesGeneratedInThisCall);
+        recipeCacheService.setDbCursor(token, dbCursor, dbExhausted);
+        return token;
+    }
+
+    /**
+     * Streaming variant of {@link #matchRecipesWithCache} plus the first
+     * {@link #getNextBatch}: DB matches are sent as soon as the database
+     * answers, then each AI recipe as soon as it is validated and saved, and
+     * image URLs last as they resolve. The session is left in the same state as
+     * the blocking path, so later batches come from {@link #getNextBatch}.
+     */
+    public void streamMatchingRecipes(
+            List<PantryIngredient> pantryIngredients,
+            int minPrepTime,
+            int maxPrepTime,
+            int batchSize,
+            MatchStreamListener listener) {
+        try {
+            List<PantryIngredient> pantry = pantryIngredients != null ? pantryIngredients : Collections.emptyList();
+
+            String fingerprint = MatchResultCache.fingerprint(pantry, minPrepTime, maxPrepTime);
+            MatchResultCache.CachedMatch cached = matchResultCache.get(fingerprint);
+            if (cached != null) {
+                // Images were resolved when the entry was built
+                String token = recipeCacheService.addMatchedRecipes(cached.getRecipes(), pantry, minPrepTime,
+                        maxPrepTime, cached.getAiTitles());
+                recipeCacheService.setDbCursor(token, cached.getDbCursor(), cached.isDbExhausted());
+                listener.onToken(token);
+                listener.onDbRecipes(getNextBatch(token, batchSize));
+                listener.onComplete();
+                return;
+            }
+
+            // 1. DB matches, without images
+            DbPage dbPage = firstDbPage(pantry, minPrepTime, maxPrepTime);
+            List<RecipeDTO> dbRecipes = recipeService.getRecipeSummaries(dbPage.recipeIds());
+            String token = recipeCacheService.addMatchedRecipes(dbRecipes, pantry, minPrepTime, maxPrepTime,
+                    Collections.emptySet());
+            recipeCacheService.setDbCursor(token, dbPage.cursor(), dbPage.exhausted());
+            listener.onToken(token);
+
+            List<RecipeDTO> served = new ArrayList<>(recipeCacheService.getNextRecipes(token, batchSize));
+            recipeService.loadInstructions(served);
+            listener.onDbRecipes(served);
+
+            // 2. AI recipes one at a time, as each is saved
+            List<RecipeDTO> aiRecipes = new ArrayList<>();
+            Set<String> aiTitles = new HashSet<>();
+            if (served.size() < batchSize) {
+                int missing = batchSize - served.size();
+                Set<String> excluded = recipeCacheService.getAllCachedTitles(token);
+                List<Recipe> generated = fetchValidAIRecipes(pantry, minPrepTime, maxPrepTime, excluded, missing,
+                        recipe -> {
+                            if (aiRecipes.size() >= missing || !aiTitles.add(recipe.getTitle().toLowerCase()))
+                                return;
+                            RecipeDTO dto = new RecipeDTO(recipe, recipe.getIngredients().stream()
+                                    .map(IngredientDTO::new)
+                                    .collect(Collectors.toList()));
+                            recipeCacheService.addMoreRecipes(token, List.of(dto), true);
+                            List<RecipeDTO> next = recipeCacheService.getNextRecipes(token, 1);
+                            if (!next.isEmpty()) {
+                                aiRecipes.add(dto);
+                                served.add(dto);
+                                listener.onAiRecipe(dto);
+                            }
+                        });
+
+                // Over-fetched extras stay in the session for later batches
+                List<RecipeDTO> extras = generated.stream()
+                        .filter(r -> !aiTitles.contains(r.getTitle().toLowerCase()))
+                        .map(this::toDto)
+                        .collect(Collectors.toList());
+                recipeCacheService.addMoreRecipes(token, extras, true);
+            }
+
+            // 3. Images for what was sent, then for the rest of the DB page
+            for (RecipeDTO recipe : served) {
+                streamImages(recipe, listener);
+            }
+            dbRecipes.forEach(this::enrichImages); // cached lookups for the served ones
+
+            List<RecipeDTO> all = new ArrayList<>(dbRecipes);
+            all.addAll(aiRecipes);
+            matchResultCache.put(fingerprint, all, aiTitles, dbPage.cursor(), dbPage.exhausted());
+            listener.onComplete();
+            prefetchIfLow(token, batchSize);
+        } catch (Exception e) {
+            listener.onError(e);
+        }
+    }
+
+    private void streamImages(RecipeDTO recipe, MatchStreamListener listener) {
+        if (recipe.getIngredients() == null)
+            return;
+        for (IngredientDTO dto : recipe.getIngredients()) {
+            dto.setImageUrl(ingredientImageService.getImageUrl(dto.getIngredientName()));
+            listener.onImage(recipe.getId(), dto.getIngredientName(), dto.getImageUrl());
+        }
     }
 
-    @Transactional
     public List<RecipeDTO> getNextBatch(String token, int batchSize) throws Exception {
         if (token == null || batchSize <= 0)
             return Collections.emptyList();
@@ -95,13 +239,26 @@ public class RecipeMatcherService {
         List<RecipeDTO> cacheBatch = recipeCacheService.getNextRecipes(token, batchSize);
         resultBatch.addAll(cacheBatch);
 
+        // Cache ran dry but there are more ranked DB matches: fetch the next page
+        while (resultBatch.size() < batchSize && !recipeCacheService.isDbExhausted(token)) {
+            fetchNextRankedPage(token);
+            resultBatch.addAll(recipeCacheService.getNextRecipes(token, batchSize - resultBatch.size()));
+        }
+
+        // A background generation may be about to fill the gap; wait for it rather than duplicate it
+        if (resultBatch.size() < batchSize) {
+            recipeCacheService.awaitPrefetch(token);
+            resultBatch.addAll(recipeCacheService.getNextRecipes(token, batchSize - resultBatch.size()));
+        }
+
         int filled = resultBatch.size();
 
         int aiGeneratedSoFar = recipeCacheService.getAiGeneratedCount(token);
-        int aiRemaining = Math.max(0, 5 - aiGeneratedSoFar);
+        int aiRemaining = Math.max(0, RecipeCacheService.MAX_AI_RECIPES_PER_SESSION - aiGeneratedSoFar);
         int remainingSlots = batchSize - filled;
 
         if (remainingSlots > 0 && aiRemaining > 0) {
+            meterRegistry.counter("pantrypilot.ai.prefetch", "result", "miss").increment();
             int toFetchFromAI = Math.min(remainingSlots, aiRemaining);
 
             int minPrep = recipeCacheService.getMinPrepTime(token);
@@ -112,18 +269,7 @@ public class RecipeMatcherService {
 
             List<Recipe> aiRecipes = fetchValidAIRecipes(pantry, minPrep, maxPrep, allExcludedTitles, toFetchFromAI);
             List<RecipeDTO> dtoAI = aiRecipes.stream()
-                    .map(recipe -> {
-                        List<IngredientDTO> enrichedIngredients = recipe.getIngredients().stream()
-                                .map(ri -> {
-                                    IngredientDTO dto = new IngredientDTO(ri);
-                                    String url = ingredientImageService.getImageUrl(dto.getIngredientName());
-                                    dto.setImageUrl(url);
-                                    return dto;
-                                })
-                                .collect(Collectors.toList());
-
-                        return new RecipeDTO(recipe, enrichedIngredients);
-                    })
+                    .map(this::toDto)
                     .collect(Collectors.toList());
 
             recipeCacheService.addMoreRecipes(token, dtoAI, true);
@@ -138,7 +284,174 @@ public class RecipeMatcherService {
             return Collections.emptyList();
         }
 
-        return (resultBatch.size() > batchSize) ? resultBatch.subList(0, batchSize) : resultBatch;
+        List<RecipeDTO> served = (resultBatch.size() > batchSize) ? resultBatch.subList(0, batchSize) : resultBatch;
+        recipeService.loadInstructions(served);
+        prefetchIfLow(token, batchSize);
+        return served;
+    }
+
+    /**
+     * Once the session's cached recipes drop below the low-water mark and the DB
+     * matches are used up, generates the next AI recipes in the background
+     * (within the session's AI budget) so the next batch is served from cache.
+     */
+    private void prefetchIfLow(String token, int batchSize) {
+        if (recipeCacheService.getRemainingCount(token) >= prefetchLowWaterMark
+                || !recipeCacheService.isDbExhausted(token))
+            return;
+        int budget = recipeCacheService.getAiBudgetLeft(token);
+        if (budget <= 0)
+            return;
+
+        int count = Math.min(budget, batchSize);
+        recipeCacheService.schedulePrefetch(token, aiPrefetchExecutor, () -> {
+            try {
+                List<Recipe> aiRecipes = fetchValidAIRecipes(
+                        recipeCacheService.getCachedIngredients(token),
+                        recipeCacheService.getMinPrepTime(token),
+                        recipeCacheService.getMaxPrepTime(token),
+                        recipeCacheService.getAllCachedTitles(token),
+                        count);
+                if (Thread.currentThread().isInterrupted())
+                    return;
+                recipeCacheService.addPrefetchedRecipes(token,
+                        aiRecipes.stream().map(this::toDto).collect(Collectors.toList()));
+            } catch (Exception e) {
+                System.out.println("AI prefetch failed for token " + token + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Applies a pantry edit to an existing session: entries in {@code add} are new
+     * or replace the same ingredient, names in {@code remove} are dropped. Only
+     * recipes using a changed ingredient have their hit counts updated, then the
+     * session's pending DB recipes are re-ranked in place. Runs under the
+     * session's lock, so concurrent edits to one session apply in turn. Returns
+     * false for an unknown token.
+     */
+    public boolean applyPantryDelta(String token, List<PantryIngredient> add, List<String> remove) {
+        Boolean applied = recipeCacheService.withMatchState(token, (pantry, matchState, minPrep, maxPrep) -> {
+            // Current pantry by resolved ingredient, first entry wins as in matching
+            Map<String, PantryIngredient> byKey = new LinkedHashMap<>();
+            for (PantryIngredient pi : pantry) {
+                if (pi.getIngredientName() != null)
+                    byKey.putIfAbsent(pantryKey(pi.getIngredientName()), pi);
+            }
+
+            if (!recipeIndexService.isLoaded()) {
+                applyDelta(byKey, add, remove, null, minPrep, maxPrep);
+                List<PantryIngredient> updated = new ArrayList<>(byKey.values());
+                List<Long> ids = recipeService.findMatchingRecipeIds(minPrep, maxPrep, updated);
+                List<RecipeDTO> dtos = recipeService.getRecipeSummaries(ids);
+                dtos.forEach(this::enrichImages);
+                recipeCacheService.applyPantryUpdate(token, updated, null, dtos, null, true);
+                return true;
+            }
+
+            // Counters are built on the first edit, then patched for pantry and catalog changes
+            PantryMatchState state = matchState;
+            applyDelta(byKey, add, remove, state, minPrep, maxPrep);
+            List<PantryIngredient> updated = new ArrayList<>(byKey.values());
+            if (state == null) {
+                state = recipeIndexService.countHits(minPrep, maxPrep, updated);
+            } else {
+                recipeIndexService.refresh(state, updated);
+            }
+
+            List<RankedMatch> top = recipeIndexService.findTopMatches(state, topK, null);
+            List<RecipeDTO> dtos = recipeService.getRecipeSummaries(
+                    top.stream().map(RankedMatch::getRecipeId).collect(Collectors.toList()));
+            dtos.forEach(this::enrichImages);
+            recipeCacheService.applyPantryUpdate(token, updated, state, dtos,
+                    top.isEmpty() ? null : top.get(top.size() - 1), top.size() < topK);
+            return true;
+        });
+        return applied != null;
+    }
+
+    private void applyDelta(Map<String, PantryIngredient> byKey, List<PantryIngredient> add, List<String> remove,
+            PantryMatchState state, int minPrep, int maxPrep) {
+        if (remove != null) {
+            for (String name : remove) {
+                PantryIngredient before = byKey.remove(pantryKey(name));
+                if (before != null && state != null)
+                    recipeIndexService.applyPantryChange(state, minPrep, maxPrep, before, null);
+            }
+        }
+        if (add != null) {
+            for (PantryIngredient after : add) {
+                if (after.getIngredientName() == null)
+                    continue;
+                PantryIngredient before = byKey.put(pantryKey(after.getIngredientName()), after);
+                if (state != null)
+                    recipeIndexService.applyPantryChange(state, minPrep, maxPrep, before, after);
+            }
+        }
+    }
+
+    /**
+     * Key of the pantry slot a name fills: its dictionary ingredient when it
+     * resolves, so aliases ("scallion", "green onion") replace each other the
+     * way the hit counters see them, else its ingredient key.
+     */
+    private String pantryKey(String name) {
+        int id = ingredientNameResolver.resolve(name);
+        return id >= 0 ? "#" + id : IngredientNameResolver.keyOf(name);
+    }
+
+    /** First page of ranked DB matches, with where the next page starts. */
+    private record DbPage(List<Long> recipeIds, RankedMatch cursor, boolean exhausted) {
+    }
+
+    private DbPage firstDbPage(List<PantryIngredient> pantryIngredients, int minPrepTime, int maxPrepTime) {
+        // Only the top K ranked matches for now; the rest are fetched lazily
+        if (recipeIndexService.isLoaded()) {
+            List<RankedMatch> top = recipeIndexService.findTopMatches(minPrepTime, maxPrepTime, pantryIngredients,
+                    topK, null);
+            return new DbPage(top.stream().map(RankedMatch::getRecipeId).collect(Collectors.toList()),
+                    top.isEmpty() ? null : top.get(top.size() - 1), top.size() < topK);
+        }
+        return new DbPage(recipeService.findMatchingRecipeIds(minPrepTime, maxPrepTime, pantryIngredients),
+                null, true);
+    }
+
+    private void fetchNextRankedPage(String token) {
+        // Sessions edited through applyPantryDelta page from their own counters
+        RankedMatch after = recipeCacheService.getDbCursor(token);
+        List<RankedMatch> page = recipeCacheService.withMatchState(token, (pantry, state, minPrep, maxPrep) -> {
+            if (state == null)
+                return recipeIndexService.findTopMatches(minPrep, maxPrep, pantry, topK, after);
+            recipeIndexService.refresh(state, pantry);
+            return recipeIndexService.findTopMatches(state, topK, after);
+        });
+        if (page == null)
+            return;
+
+        List<Long> ids = page.stream().map(RankedMatch::getRecipeId).collect(Collectors.toList());
+        List<RecipeDTO> dtos = recipeService.getRecipeSummaries(ids);
+        dtos.forEach(this::enrichImages);
+        recipeCacheService.addMoreRecipes(token, dtos, false);
+
+        RankedMatch cursor = page.isEmpty() ? recipeCacheService.getDbCursor(token) : page.get(page.size() - 1);
+        recipeCacheService.setDbCursor(token, cursor, page.size() < topK);
+    }
+
+    private RecipeDTO toDto(Recipe recipe) {
+        List<IngredientDTO> ingredients = recipe.getIngredients().stream()
+                .map(IngredientDTO::new)
+                .collect(Collectors.toList());
+        RecipeDTO dto = new RecipeDTO(recipe, ingredients);
+        enrichImages(dto);
+        return dto;
+    }
+
+    private void enrichImages(RecipeDTO recipe) {
+        if (recipe.getIngredients() == null)
+            return;
+        for (IngredientDTO dto : recipe.getIngredients()) {
+            dto.setImageUrl(ingredientImageService.getImageUrl(dto.getIngredientName()));
+        }
     }
 
     /**
@@ -151,6 +464,19 @@ public class RecipeMatcherService {
             int maxPrepTime,
             Set<String> allExcludedTitles,
             int required) throws Exception {
+        return fetchValidAIRecipes(pantryIngredients, minPrepTime, maxPrepTime, allExcludedTitles, required,
+                recipe -> {
+                });
+    }
+
+    /** As above, also handing each recipe to {@code onRecipe} as soon as it is saved. */
+    private List<Recipe> fetchValidAIRecipes(
+            List<PantryIngredient> pantryIngredients,
+            int minPrepTime,
+            int maxPrepTime,
+            Set<String> allExcludedTitles,
+            int required,
+            Consumer<Recipe> onRecipe) throws Exception {
 
         List<Map<String, Object>> ingredientsForAI = pantryIngredients.stream()
                 .map(pi -> {
@@ -170,73 +496,212 @@ public class RecipeMatcherService {
                          ", max allowed=" + maxAllowedIngredients);
 
         List<Recipe> validRecipes = new ArrayList<>();
-        int attempts = 0;
-
         Set<String> localExcludedTitles = new HashSet<>(allExcludedTitles);
 
-        while (validRecipes.size() < required && attempts < MAX_AI_RETRIES) {
+        // Attempts run concurrently; only hand recipes on while this call is still collecting,
+        // and not a reworded copy of one the session has or was just handed
+        Object lock = new Object();
+        boolean[] collecting = {true};
+        Set<String> handedOnTitles = new HashSet<>();
+        Consumer<Recipe> guardedOnRecipe = recipe -> {
+            synchronized (lock) {
+                if (!collecting[0]
+                        || recipeSimilarityIndex.duplicatesAnyOf(recipe, allExcludedTitles)
+                        || recipeSimilarityIndex.duplicatesAnyOf(recipe, handedOnTitles))
+                    return;
+                handedOnTitles.add(recipe.getTitle().toLowerCase());
+                onRecipe.accept(recipe);
+            }
+        };
+
+        CompletionService<List<Recipe>> completion = new ExecutorCompletionService<>(aiAttemptExecutor);
+        List<Future<List<Recipe>>> outstanding = new ArrayList<>();
+        Map<Future<List<Recipe>>, Integer> requestedBy = new HashMap<>();
+        int attempts = 0;
+
+        // A high recent rejection rate means one attempt rarely suffices: start two at once
+        double rejectionRate = attemptStats.rejectionRate(providedIngredientCount);
+        int initial = rejectionRate >= parallelRejectionThreshold ? 2 : 1;
+        for (int i = 0; i < initial; i++) {
             attempts++;
+            int askFor = overFetchCount(required, rejectionRate, maxRecipesPerCall);
+            Future<List<Recipe>> f = submitAttempt(completion, ingredientsForAI, minPrepTime, maxPrepTime,
+                    new HashSet<>(localExcludedTitles), askFor, attempts, guardedOnRecipe,
+                    i == 0 ? "primary" : "parallel");
+            outstanding.add(f);
+            requestedBy.put(f, askFor);
+        }
 
-            int stillNeeded = required - validRecipes.size();
-            List<Recipe> aiRecipes = recipeAIService.generateRecipes(
-                    ingredientsForAI,
-                    minPrepTime,
-                    maxPrepTime,
-                    localExcludedTitles,
-                    stillNeeded);
-
-            // Filter with ALL validations:
-            // 1. Non-null/empty title
-            // 2. Not already excluded
-            // 3. Ingredient count within limit
-            // 4. Has valid ingredients list
-            List<Recipe> newUniqueRecipes = aiRecipes.stream()
-                    .filter(r -> r.getTitle() != null && !r.getTitle().trim().isEmpty())
-                    .filter(r -> !localExcludedTitles.contains(r.getTitle().toLowerCase()))
-                    .filter(r -> {
-                        if (r.getIngredients() == null || r.getIngredients().isEmpty()) {
-                            System.out.println("Rejecting recipe '" + r.getTitle() + "': no ingredients");
-                            return false;
-                        }
-                        
-                        int recipeIngredientCount = r.getIngredients().size();
-                        boolean valid = recipeIngredientCount <= maxAllowedIngredients;
-                        
-                        if (!valid) {
-                            System.out.println("Rejecting recipe '" + r.getTitle() + 
-                                             "': has " + recipeIngredientCount + 
-                                             " ingredients, max allowed is " + maxAllowedIngredients);
-                        }
-                        
-                        return valid;
-                    })
-                    .collect(Collectors.toList());
+        try {
+            while (validRecipes.size() < required && !outstanding.isEmpty()) {
+                // With a single attempt in flight, hedge once it runs past the usual latency
+                Future<List<Recipe>> done;
+                if (hedgingEnabled && outstanding.size() == 1 && attempts < MAX_AI_RETRIES) {
+                    long hedgeAfter = attemptStats.latencyPercentile(hedgePercentile, hedgeDefaultDelayMs);
+                    done = completion.poll(hedgeAfter, TimeUnit.MILLISECONDS);
+                    if (done == null) {
+                        attempts++;
+                        int askFor = overFetchCount(required - validRecipes.size(), rejectionRate,
+                                maxRecipesPerCall);
+                        Future<List<Recipe>> f = submitAttempt(completion, ingredientsForAI, minPrepTime,
+                                maxPrepTime, new HashSet<>(localExcludedTitles), askFor, attempts,
+                                guardedOnRecipe, "hedge");
+                        outstanding.add(f);
+                        requestedBy.put(f, askFor);
+                        continue;
+                    }
+                } else {
+                    done = completion.take();
+                }
+                outstanding.remove(done);
+
+                List<Recipe> aiRecipes;
+                boolean failed = false;
+                try {
+                    aiRecipes = done.get();
+                } catch (ExecutionException e) {
+                    // Keep what streamed before the failure, but it says nothing about rejections
+                    aiRecipes = e.getCause() instanceof AiGenerationException failure
+                            ? failure.getRecipes()
+                            : Collections.emptyList();
+                    failed = true;
+                    meterRegistry.counter("pantrypilot.ai.attempts.failed").increment();
+                }
+
+                // Filter with ALL validations:
+                // 1. Non-null/empty title
+                // 2. Not already excluded, nor a near-duplicate of an excluded one
+                // 3. Ingredient count within limit
+                // 4. Has valid ingredients list
+                List<Recipe> newUniqueRecipes = new ArrayList<>();
+                for (Recipe r : aiRecipes) {
+                    if (isValidAIRecipe(r, localExcludedTitles, maxAllowedIngredients)) {
+                        newUniqueRecipes.add(r);
+                        localExcludedTitles.add(r.getTitle().toLowerCase());
+                    }
+                }
+                validRecipes.addAll(newUniqueRecipes);
+                // A failed call isn't a rejection: counting it would over-fetch and parallelize under overload
+                if (!failed)
+                    attemptStats.recordOutcome(providedIngredientCount, requestedBy.get(done), newUniqueRecipes.size());
+
+                // Still short and nothing else running: retry
+                if (validRecipes.size() < required && outstanding.isEmpty() && attempts < MAX_AI_RETRIES) {
+                    attempts++;
+                    rejectionRate = attemptStats.rejectionRate(providedIngredientCount);
+                    int askFor = overFetchCount(required - validRecipes.size(), rejectionRate,
+                            maxRecipesPerCall);
+                    Future<List<Recipe>> f = submitAttempt(completion, ingredientsForAI, minPrepTime, maxPrepTime,
+                            new HashSet<>(localExcludedTitles), askFor, attempts, guardedOnRecipe, "retry");
+                    outstanding.add(f);
+                    requestedBy.put(f, askFor);
+                }
+            }
+        } finally {
+            synchronized (lock) {
+                collecting[0] = false;
+            }
+            // Enough collected (or gave up): drop queued attempts, but let running ones finish.
+            // A running attempt may lead a single-flight generation other callers wait on;
+            // interrupting it would hand them all its truncated result.
+            for (Future<List<Recipe>> f : outstanding) {
+                f.cancel(false);
+            }
+        }
 
-            validRecipes.addAll(newUniqueRecipes);
-            newUniqueRecipes.stream()
-                    .map(Recipe::getTitle)
-                    .filter(Objects::nonNull)
-                    .map(String::toLowerCase)
-                    .forEach(localExcludedTitles::add);
+        if (validRecipes.size() >= required) {
+            meterRegistry.summary("pantrypilot.ai.round.trips").record(attempts);
+        } else {
+            meterRegistry.counter("pantrypilot.ai.unsatisfied").increment();
         }
 
+        // May hold more than required: callers keep the extras in the session for later batches
         System.out.println("AI fetch completed: " + validRecipes.size() + " valid recipes after " + attempts + " attempts");
         return validRecipes;
     }
 
+    /**
+     * How many recipes to ask for so that, at the observed rejection rate,
+     * {@code needed} valid ones come back in one call with high probability:
+     * the expected count plus a margin, capped at {@code maxPerCall}.
+     */
+    static int overFetchCount(int needed, double rejectionRate, int maxPerCall) {
+        double acceptRate = Math.max(0.2, 1.0 - rejectionRate);
+        double expected = needed / acceptRate;
+        // ~2 standard deviations of a binomial draw of that size
+        double margin = 2 * Math.sqrt(expected * (1 - acceptRate));
+        return Math.max(needed, Math.min(maxPerCall, (int) Math.ceil(expected + margin)));
+    }
+
+    private Future<List<Recipe>> submitAttempt(CompletionService<List<Recipe>> completion,
+            List<Map<String, Object>> ingredientsForAI, int minPrepTime, int maxPrepTime,
+            Set<String> excludedTitles, int count, int attempt, Consumer<Recipe> onRecipe, String kind) {
+        meterRegistry.counter("pantrypilot.ai.attempts", "kind", kind).increment();
+        return completion.submit(() -> timedAttempt(attemptStats, () -> recipeAIService.generateRecipes(
+                ingredientsForAI, minPrepTime, maxPrepTime, excludedTitles, count, attempt, onRecipe)));
+    }
+
+    /**
+     * Runs one AI attempt and records its latency only if the model answered.
+     * A bulkhead rejection or provider error fails in milliseconds, and an
+     * interrupted attempt (generateRecipes keeps the flag and returns what it
+     * had) is cut short; either would drag the hedge percentile down.
+     */
+    static <T> T timedAttempt(AiAttemptStats stats, Callable<T> attempt) throws Exception {
+        long start = System.currentTimeMillis();
+        T result = attempt.call();
+        if (!Thread.currentThread().isInterrupted())
+            stats.recordLatency(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private boolean isValidAIRecipe(Recipe r, Set<String> excludedTitles, int maxAllowedIngredients) {
+        if (r.getTitle() == null || r.getTitle().trim().isEmpty())
+            return false;
+        if (excludedTitles.contains(r.getTitle().toLowerCase()))
+            return false;
+        if (r.getIngredients() == null || r.getIngredients().isEmpty()) {
+            System.out.println("Rejecting recipe '" + r.getTitle() + "': no ingredients");
+            return false;
+        }
+        if (recipeSimilarityIndex.duplicatesAnyOf(r, excludedTitles)) {
+            System.out.println("Rejecting recipe '" + r.getTitle() + "': near-duplicate of one already in the session");
+            meterRegistry.counter("pantrypilot.ai.near.duplicates").increment();
+            return false;
+        }
+
+        int recipeIngredientCount = r.getIngredients().size();
+        boolean valid = recipeIngredientCount <= maxAllowedIngredients;
+
+        if (!valid) {
+            System.out.println("Rejecting recipe '" + r.getTitle() +
+                             "': has " + recipeIngredientCount +
+                             " ingredients, max allowed is " + maxAllowedIngredients);
+        }
+
+        return valid;
+    }
+
     public List<Recipe> matchRecipes(List<PantryIngredient> providedPantry) {
         List<PantryIngredient> pantryIngredients = (providedPantry != null && !providedPantry.isEmpty())
                 ? providedPantry
                 : pantryIngredientRepository.findAll();
 
-        Map<String, PantryIngredient> pantryMap = pantryIngredients.stream()
-                .filter(pi -> pi.getIngredientName() != null)
-                .collect(Collectors.toMap(
-                        pi -> normalizeName(pi.getIngredientName()),
-                        pi -> pi,
-                        (pi1, pi2) -> pi1));
+        // Signature pre-filter and exact check against the resident index
+        if (recipeIndexService.isLoaded()) {
+            List<Long> ids = recipeIndexService.findCompleteMatchIds(pantryIngredients);
+            return ids.isEmpty() ? new ArrayList<>() : new ArrayList<>(recipeRepository.findWithIngredientsByIdIn(ids));
+        }
 
-        List<Recipe> allRecipes = recipeRepository.findAll();
+        // Keyed by resolved ingredient ID; first pantry entry wins
+        Map<Integer, PantryIngredient> pantryMap = new HashMap<>();
+        for (PantryIngredient pi : pantryIngredients) {
+            int id = ingredientNameResolver.resolve(pi.getIngredientName());
+            if (id >= 0)
+                pantryMap.putIfAbsent(id, pi);
+        }
+
+        List<Recipe> allRecipes = recipeRepository.findAllWithIngredients();
         List<Recipe> matchedRecipes = new ArrayList<>();
 
         for (Recipe recipe : allRecipes) {
@@ -250,7 +715,7 @@ public class RecipeMatcherService {
 
     // --- Helper methods ---
 
-    private boolean canMakeRecipe(Recipe recipe, Map<String, PantryIngredient> pantryMap) {
+    private boolean canMakeRecipe(Recipe recipe, Map<Integer, PantryIngredient> pantryMap) {
         if (recipe.getIngredients() == null)
             return false;
 
@@ -258,47 +723,13 @@ public class RecipeMatcherService {
             if (req.getIngredientName() == null)
                 return false;
 
-            String reqName = normalizeName(req.getIngredientName());
-            String reqUnit = normalizeUnit(req.getUnit());
-
-            PantryIngredient pantry = findPantryMatch(reqName, pantryMap);
+            PantryIngredient pantry = pantryMap.get(ingredientNameResolver.resolve(req.getIngredientName()));
             if (pantry == null)
                 return false;
 
-            double pantryQty = UnitConverter.convert(pantry.getQuantity(), pantry.getUnit(), reqUnit);
-            if (pantryQty < req.getQuantity())
+            if (!UnitConverter.isEnough(pantry, req))
                 return false;
         }
         return true;
     }
-
-    private String normalizeName(String name) {
-        return (name == null) ? "" : name.trim().toLowerCase();
-    }
-
-    private String normalizeUnit(String unit) {
-        return (unit == null) ? "" : unit.trim().toLowerCase();
-    }
-
-    private PantryIngredient findPantryMatch(String reqName, Map<String, PantryIngredient> pantryMap) {
-        if (pantryMap.containsKey(reqName))
-            return pantryMap.get(reqName);
-
-            
-        if (reqName.endsWith("es") && pantryMap.containsKey(reqName.substring(0, reqName.length() - 2))) {
-            return pantryMap.get(reqName.substring(0, reqName.length() - 2));
-        }
-        if (reqName.endsWith("s") && pantryMap.containsKey(reqName.substring(0, reqName.length() - 1))) {
-            return pantryMap.get(reqName.substring(0, reqName.length() - 1));
-        }
-
-
-        for (String pantryKey : pantryMap.keySet()) {
-            if (pantryKey.contains(reqName) || reqName.contains(pantryKey)) {
-                return pantryMap.get(pantryKey);
-            }
-        }
-
-        return null;
-    }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package com.pantrypilot.service;
 
+import com.pantrypilot.dto.RecipeDTO;
 import com.pantrypilot.model.PantryIngredient;
 import com.pantrypilot.model.Recipe;
 
@@ -22,8 +23,32 @@ public interface RecipeService {
             int maxPrepTime,
             List<PantryIngredient> pantryIngredients);
 
+    List<Long> findMatchingRecipeIds(
+            int minPrepTime,
+            int maxPrepTime,
+            List<PantryIngredient> pantryIngredients);
+
+    /** DTOs for the given IDs (same order) with ingredients but without instructions. */
+    List<RecipeDTO> getRecipeSummaries(List<Long> recipeIds);
+
+    /** Fills in instructions for DTOs built by {@link #getRecipeSummaries}. */
+    void loadInstructions(List<RecipeDTO> recipes);
+
     List<Recipe> saveAll(List<Recipe> recipes);
 
     Recipe saveAIRecipe(Map<String, Object> aiRecipe);
 
+    /**
+     * Reserves a recipe ID from the pooled sequence, so an AI recipe can be
+     * handed out under its final ID before it is written.
+     */
+    long reserveRecipeId();
+
+    /**
+     * Persists AI-generated recipes in one transaction, under their reserved IDs
+     * (one is reserved for any recipe without). Returns them in order; a recipe
+     * whose title already exists is skipped and the stored recipe returned instead.
+     */
+    List<Recipe> saveAIRecipes(List<Recipe> recipes);
+
 }
@@ -0,0 +1,234 @@
+package com.pantrypilot.service;
+
+import com.pantrypilot.model.Recipe;
+import com.pantrypilot.model.RecipeIngredient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * MinHash/LSH index for spotting near-duplicate recipes ("Tomato Rice" vs
+ * "Tomato Rice Pilaf" with the same ingredients) that exact title matching
+ * lets through.
+ *
+ * A recipe's features are its title words (keyed like ingredient names, minus
+ * filler words) and its resolved ingredient IDs. Each recipe gets a
+ * {@value #NUM_HASHES}-value MinHash signature, split into {@value #BANDS}
+ * bands of {@value #ROWS}; recipes sharing any band are candidates, and a
+ * candidate is a near-duplicate when the signatures agree on at least
+ * {@code ai.dedup.similarity} of their values (the estimated Jaccard
+ * similarity). A lookup is a handful of hash probes, independent of catalog
+ * size.
+ *
+ * Holds the catalog (kept in step by {@link RecipeIndexService}) plus AI
+ * recipes still in the write-behind queue under their reserved IDs.
+ */
+@Service
+public class RecipeSimilarityIndex {
+
+    private static final int NUM_HASHES = 64;
+    private static final int BANDS = 16;
+    private static final int ROWS = NUM_HASHES / BANDS;
+
+    private static final Set<String> FILLER_WORDS = Set.of(
+            "a", "an", "and", "the", "with", "of", "in", "on", "style", "easy", "quick", "simple");
+
+    // Fixed seeds so signatures are comparable across restarts
+    private static final long[] SEEDS = new long[NUM_HASHES];
+
+    static {
+        Random random = new Random(0x5EEDL);
+        for (int i = 0; i < NUM_HASHES; i++) {
+            SEEDS[i] = random.nextLong();
+        }
+    }
+
+    /** A recipe whose signature is close enough to the one looked up. */
+    public record NearDuplicate(Long id, String title, double similarity) {
+    }
+
+    private record Entry(String title, int[] signature) {
+    }
+
+    private final IngredientNameResolver ingredientNameResolver;
+    private final double minSimilarity;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<String, Long> idsByTitle = new HashMap<>(); // lowercase title
+    private final List<Map<Integer, List<Long>>> bands = new ArrayList<>();
+
+    public RecipeSimilarityIndex(IngredientNameResolver ingredientNameResolver,
+            @Value("${ai.dedup.similarity:0.7}") double minSimilarity) {
+        this.ingredientNameResolver = ingredientNameResolver;
+        this.minSimilarity = minSimilarity;
+        for (int b = 0; b < BANDS; b++) {
+            bands.add(new HashMap<>());
+        }
+    }
+
+    /** Adds or replaces a recipe. Ingredients must be initialized. */
+    public void add(Recipe recipe) {
+        if (recipe == null || recipe.getId() == null || recipe.getTitle() == null)
+            return;
+        int[] signature = signatureOf(recipe);
+
+        lock.writeLock().lock();
+        try {
+            removeInternal(recipe.getId());
+            entries.put(recipe.getId(), new Entry(recipe.getTitle(), signature));
+            idsByTitle.put(recipe.getTitle().toLowerCase(), recipe.getId());
+            for (int b = 0; b < BANDS; b++) {
+                bands.get(b).computeIfAbsent(bandKey(signature, b), k -> new ArrayList<>(1)).add(recipe.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        if (id == null)
+            return;
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            idsByTitle.clear();
+            bands.forEach(Map::clear);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexed recipes similar to this one, most similar first. The recipe
+     * itself (same ID) is never returned.
+     */
+    public List<NearDuplicate> findNearDuplicates(Recipe recipe) {
+        if (recipe == null || recipe.getTitle() == null)
+            return Collections.emptyList();
+        int[] signature = signatureOf(recipe);
+
+        List<NearDuplicate> found = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Set<Long> candidates = new HashSet<>();
+            for (int b = 0; b < BANDS; b++) {
+                List<Long> ids = bands.get(b).get(bandKey(signature, b));
+                if (ids != null)
+                    candidates.addAll(ids);
+            }
+            candidates.remove(recipe.getId());
+
+            for (Long id : candidates) {
+                Entry entry = entries.get(id);
+                double similarity = similarity(signature, entry.signature());
+                if (similarity >= minSimilarity)
+                    found.add(new NearDuplicate(id, entry.title(), similarity));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        found.sort(Comparator.comparingDouble(NearDuplicate::similarity).reversed());
+        return found;
+    }
+
+    /** Whether the recipe is a near-duplicate of an indexed one whose (lowercase) title is in {@code titles}. */
+    public boolean duplicatesAnyOf(Recipe recipe, Set<String> titles) {
+        if (titles.isEmpty())
+            return false;
+        for (NearDuplicate dup : findNearDuplicates(recipe)) {
+            if (titles.contains(dup.title().toLowerCase()))
+                return true;
+        }
+        return false;
+    }
+
+    /** ID of the indexed recipe with this title (ignoring case), or null. */
+    public Long idOfTitle(String title) {
+        if (title == null)
+            return null;
+        lock.readLock().lock();
+        try {
+            return idsByTitle.get(title.toLowerCase());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeInternal(Long id) {
+        Entry entry = entries.remove(id);
+        if (entry == null)
+            return;
+        idsByTitle.remove(entry.title().toLowerCase(), id);
+        for (int b = 0; b < BANDS; b++) {
+            Map<Integer, List<Long>> band = bands.get(b);
+            int key = bandKey(entry.signature(), b);
+            List<Long> ids = band.get(key);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty())
+                    band.remove(key);
+            }
+        }
+    }
+
+    private int[] signatureOf(Recipe recipe) {
+        int[] signature = new int[NUM_HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (String word : IngredientNameResolver.keyOf(recipe.getTitle()).split(" ")) {
+            if (!word.isEmpty() && !FILLER_WORDS.contains(word))
+                addFeature(signature, ("t:" + word).hashCode());
+        }
+        if (recipe.getIngredients() != null) {
+            for (RecipeIngredient ri : recipe.getIngredients()) {
+                int id = ingredientNameResolver.resolve(ri.getIngredientName());
+                addFeature(signature, id >= 0 ? id : ("i:" + IngredientNameResolver.keyOf(ri.getIngredientName())).hashCode());
+            }
+        }
+        return signature;
+    }
+
+    private static void addFeature(int[] signature, int feature) {
+        for (int i = 0; i < NUM_HASHES; i++) {
+            int h = (int) mix(feature ^ SEEDS[i]);
+            if (h < signature[i])
+                signature[i] = h;
+        }
+    }
+
+    private static double similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            if (a[i] == b[i])
+                same++;
+        }
+        return (double) same / NUM_HASHES;
+    }
+
+    private static int bandKey(int[] signature, int band) {
+        int h = band;
+        for (int i = band * ROWS; i < (band + 1) * ROWS; i++) {
+            h = 31 * h + signature[i];
+        }
+        return h;
+    }
+
+    // MurmurHash3 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb53a9b85ec4eL;
+        return z ^ (z >>> 33);
+    }
+}
@@ -0,0 +1,99 @@
+package com.pantrypilot.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.pantrypilot.model.Recipe;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Incrementally parses a streamed JSON array of recipes, one chunk of model
+ * output at a time, emitting each recipe as soon as its object closes.
+ *
+ * Text before the first '[' (e.g. a markdown fence) and after the array ends
+ * is ignored; comments are allowed. A recipe that doesn't bind is skipped, and
+ * malformed JSON stops parsing but keeps what was already emitted.
+ */
+final class RecipeStreamParser {
+
+    private final ObjectMapper objectMapper;
+    private final Consumer<Recipe> onRecipe;
+    private final JsonParser parser;
+
+    private boolean started = false;
+    private boolean finished = false;
+    private int depth = 0;
+    private TokenBuffer current; // tokens of the recipe object being read
+
+    RecipeStreamParser(ObjectMapper objectMapper, Consumer<Recipe> onRecipe) throws IOException {
+        this.objectMapper = objectMapper;
+        this.onRecipe = onRecipe;
+        this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        this.parser.enable(JsonParser.Feature.ALLOW_COMMENTS);
+    }
+
+    /** Feeds the next chunk of text; recipes completed by it are emitted before this returns. */
+    void feed(String chunk) {
+        if (finished || chunk == null || chunk.isEmpty())
+            return;
+
+        if (!started) {
+            int start = chunk.indexOf('[');
+            if (start < 0)
+                return;
+            started = true;
+            chunk = chunk.substring(start);
+        }
+
+        try {
+            byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+            ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(bytes, 0, bytes.length);
+            drain();
+        } catch (IOException e) {
+            System.out.println("Stopped parsing AI stream: " + e.getMessage());
+            finished = true;
+        }
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while (!finished && (token = parser.nextToken()) != JsonToken.NOT_AVAILABLE) {
+            if (token == null) {
+                finished = true;
+                return;
+            }
+
+            if (token.isStructStart()) {
+                depth++;
+                if (depth == 2 && token == JsonToken.START_OBJECT)
+                    current = new TokenBuffer(parser);
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+
+            if (current != null)
+                current.copyCurrentEvent(parser);
+
+            if (depth == 1 && token == JsonToken.END_OBJECT && current != null) {
+                emit(current);
+                current = null;
+            } else if (depth == 0) {
+                // The array closed; anything after it (a closing fence) is noise
+                finished = true;
+            }
+        }
+    }
+
+    private void emit(TokenBuffer tokens) {
+        try (JsonParser recipeParser = tokens.asParser(objectMapper)) {
+            onRecipe.accept(objectMapper.readValue(recipeParser, Recipe.class));
+        } catch (IOException e) {
+            System.out.println("Skipping AI recipe that doesn't bind: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.pantrypilot.service;
+
+import com.pantrypilot.dto.IngredientDTO;
+import com.pantrypilot.dto.RecipeDTO;
+import com.pantrypilot.model.Recipe;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Write-behind persistence for AI recipes. A generated recipe gets its final
+ * ID straight away, reserved from the pooled {@code recipe_seq}, and goes to
+ * the session under it; a scheduled flush then writes whatever every session
+ * has queued in one batched transaction. Sessions never see an ID that
+ * changes later.
+ *
+ * A title that is already in the catalog or queued, or a near-duplicate of
+ * one ({@link RecipeSimilarityIndex}), is served as that recipe instead and
+ * never written. If a title gets taken between queueing and the flush, the
+ * sessions' copy is replaced (content and ID) by the stored recipe.
+ *
+ * Capacity is bounded by {@code ai.write-behind.capacity}: when the queue is
+ * full the recipe is written synchronously instead. Anything still queued is
+ * flushed on shutdown. Callers that need a queued recipe's row (likes) wait
+ * for its flush, up to {@code ai.write-behind.await-timeout-ms}.
+ */
+@Component
+public class RecipeWriteBehindQueue {
+
+    private final RecipeService recipeService;
+    private final RecipeCacheService recipeCacheService;
+    private final MatchResultCache matchResultCache;
+    private final RecipeSimilarityIndex recipeSimilarityIndex;
+    private final int capacity;
+    private final int maxBatch;
+    private final long awaitTimeoutMs;
+
+    private final Object flushLock = new Object();
+
+    // Guarded by this; insertion order is flush order
+    private final LinkedHashMap<Long, Recipe> pending = new LinkedHashMap<>();
+    // Guarded by this; completed once the queued recipe's flush is done, written or not
+    private final Map<Long, CompletableFuture<Void>> flushes = new HashMap<>();
+
+    private final Timer flushTimer;
+    private final Counter flushed;
+    private final Counter dropped;
+    private final Counter replaced;
+    private final Counter overflow;
+    private final Counter reused;
+
+    public RecipeWriteBehindQueue(RecipeService recipeService,
+            RecipeCacheService recipeCacheService,
+            MatchResultCache matchResultCache,
+            RecipeSimilarityIndex recipeSimilarityIndex,
+            @Value("${ai.write-behind.capacity:500}") int capacity,
+            @Value("${ai.write-behind.max-batch:200}") int maxBatch,
+            @Value("${ai.write-behind.await-timeout-ms:2000}") long awaitTimeoutMs,
+            MeterRegistry meterRegistry) {
+        this.recipeService = recipeService;
+        this.recipeCacheService = recipeCacheService;
+        this.matchResultCache = matchResultCache;
+        this.recipeSimilarityIndex = recipeSimilarityIndex;
+        this.capacity = capacity;
+        this.maxBatch = maxBatch;
+        this.awaitTimeoutMs = awaitTimeoutMs;
+
+        this.flushTimer = meterRegistry.timer("pantrypilot.ai.write.flush");
+        this.flushed = meterRegistry.counter("pantrypilot.ai.write.flushed");
+        this.dropped = meterRegistry.counter("pantrypilot.ai.write.dropped");
+        this.replaced = meterRegistry.counter("pantrypilot.ai.write.replaced");
+        this.overflow = meterRegistry.counter("pantrypilot.ai.write.overflow");
+        this.reused = meterRegistry.counter("pantrypilot.ai.write.reused");
+        meterRegistry.gauge("pantrypilot.ai.write.queue.depth", this, RecipeWriteBehindQueue::size);
+    }
+
+    /**
+     * Queues the recipe under a reserved ID and returns it. A recipe with the
+     * title of, or near-duplicating, one already queued or in the catalog
+     * returns that recipe instead and is never written; a full queue writes
+     * it synchronously.
+     */
+    public Recipe enqueue(Recipe recipe) {
+        Long existingId;
+        synchronized (this) {
+            existingId = existingIdOf(recipe);
+            if (existingId != null && pending.containsKey(existingId))
+                return existing(pending.get(existingId));
+        }
+        if (existingId == null) {
+            // Outside the lock: every 50th reservation hits the database
+            recipe.setId(recipeService.reserveRecipeId());
+            synchronized (this) {
+                // Again: a concurrent enqueue may have queued the same dish meanwhile
+                existingId = existingIdOf(recipe);
+                if (existingId != null && pending.containsKey(existingId))
+                    return existing(pending.get(existingId));
+                if (existingId == null && pending.size() < capacity) {
+                    pending.put(recipe.getId(), recipe);
+                    flushes.put(recipe.getId(), new CompletableFuture<>());
+                    // Near-duplicate checks see it before it is written
+                    recipeSimilarityIndex.add(recipe);
+                    return recipe;
+                }
+            }
+        }
+
+        if (existingId != null) {
+            Recipe stored = recipeService.getRecipeById(existingId);
+            if (stored != null)
+                return existing(stored);
+            // Indexed but no longer in the catalog: written like any new recipe
+        } else {
+            overflow.increment();
+        }
+        return recipeService.saveAIRecipes(List.of(recipe)).get(0);
+    }
+
+    /** Indexed (catalog or queued) recipe with the same title, else the closest near-duplicate. Caller holds this. */
+    private Long existingIdOf(Recipe recipe) {
+        Long id = recipeSimilarityIndex.idOfTitle(recipe.getTitle());
+        if (id != null)
+            return id;
+        List<RecipeSimilarityIndex.NearDuplicate> found = recipeSimilarityIndex.findNearDuplicates(recipe);
+        return found.isEmpty() ? null : found.get(0).id();
+    }
+
+    private Recipe existing(Recipe recipe) {
+        reused.increment();
+        return recipe;
+    }
+
+    /** A recipe still waiting to be written, or null. */
+    public synchronized Recipe getPending(Long id) {
+        return id != null ? pending.get(id) : null;
+    }
+
+    /**
+     * Waits for the scheduled flush of the recipe with this ID, if queued, for
+     * at most the await timeout. Doesn't flush on the caller's thread. Returns
+     * false if it is still queued.
+     */
+    public boolean awaitWritten(Long id) {
+        CompletableFuture<Void> flushed;
+        synchronized (this) {
+            flushed = id != null ? flushes.get(id) : null;
+        }
+        if (flushed == null)
+            return true;
+        try {
+            flushed.get(awaitTimeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            // Never completed exceptionally
+            return true;
+        }
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    @Scheduled(fixedDelayString = "${ai.write-behind.flush-interval-ms:500}")
+    public void flush() {
+        synchronized (flushLock) {
+            List<Recipe> batch;
+            synchronized (this) {
+                if (pending.isEmpty())
+                    return;
+                batch = new ArrayList<>(pending.values()).subList(0, Math.min(maxBatch, pending.size()));
+            }
+
+            long start = System.nanoTime();
+            List<Recipe> stored = save(batch);
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+            List<CompletableFuture<Void>> done = new ArrayList<>(batch.size());
+            synchronized (this) {
+                for (Recipe recipe : batch) {
+                    pending.remove(recipe.getId());
+                    done.add(flushes.remove(recipe.getId()));
+                }
+            }
+
+            int written = 0;
+            Map<Long, RecipeDTO> replacements = new HashMap<>();
+            for (int i = 0; i < batch.size(); i++) {
+                Recipe recipe = batch.get(i);
+                Recipe saved = stored.get(i);
+                if (saved == recipe) {
+                    written++;
+                    continue;
+                }
+                // Its reserved ID will never have a row
+                recipeSimilarityIndex.remove(recipe.getId());
+                if (saved != null) {
+                    replacements.put(recipe.getId(), new RecipeDTO(saved, saved.getIngredients().stream()
+                            .map(IngredientDTO::new)
+                            .toList()));
+                }
+            }
+            recipeCacheService.replaceRecipes(replacements);
+            matchResultCache.replaceRecipes(replacements);
+            done.forEach(flushed -> flushed.complete(null));
+
+            flushed.increment(written);
+            replaced.increment(replacements.size());
+            dropped.increment(batch.size() - written - replacements.size());
+            System.out.println("Flushed " + written + " of " + batch.size() + " queued AI recipes, "
+                    + replacements.size() + " replaced by existing titles");
+        }
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        // Every flush removes its batch, written or dropped
+        while (size() > 0)
+            flush();
+    }
+
+    /**
+     * Writes the batch, returning per recipe the stored one (itself, or the
+     * catalog recipe holding its title), or null if it couldn't be written. If
+     * the batch fails, each recipe is retried on its own and the ones that
+     * still fail are dropped.
+     */
+    private List<Recipe> save(List<Recipe> batch) {
+        try {
+            return recipeService.saveAIRecipes(batch);
+        } catch (RuntimeException e) {
+            System.out.println("Batched AI recipe write failed, retrying one by one: " + e.getMessage());
+        }
+        List<Recipe> stored = new ArrayList<>();
+        for (Recipe recipe : batch) {
+            try {
+                stored.add(recipeService.saveAIRecipes(List.of(recipe)).get(0));
+            } catch (RuntimeException e) {
+                System.out.println("Dropping AI recipe '" + recipe.getTitle() + "': " + e.getMessage());
+                stored.add(null);
+            }
+        }
+        return stored;
+    }
+}
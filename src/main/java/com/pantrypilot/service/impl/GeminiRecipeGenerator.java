@@ -0,0 +1,25 @@
+package com.pantrypilot.service.impl;
+
+import com.pantrypilot.service.GeminiClient;
+import com.pantrypilot.service.RecipeGenerator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "ai.provider", havingValue = "gemini", matchIfMissing = true)
+public class GeminiRecipeGenerator implements RecipeGenerator {
+
+    private final GeminiClient geminiClient;
+
+    @Override
+    public void generate(String prompt, List<Map<String, Object>> ingredients, int minPrepTime, int maxPrepTime,
+                         int count, Consumer<String> onChunk) throws InterruptedException {
+        geminiClient.generateStream(prompt, onChunk);
+    }
+}
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pantrypilot.model.Ingredient;
 import com.pantrypilot.repository.IngredientRepository;
 import com.pantrypilot.service.IngredientImageService;
+import com.pantrypilot.service.IngredientNameResolver;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
@@ -27,9 +28,12 @@ public class IngredientImageServiceImpl implements IngredientImageService {
     private final ConcurrentHashMap<String, String> cache = new ConcurrentHashMap<>();
 
     private final IngredientRepository ingredientRepository;
+    private final IngredientNameResolver ingredientNameResolver;
 
-    public IngredientImageServiceImpl(IngredientRepository ingredientRepository) {
+    public IngredientImageServiceImpl(IngredientRepository ingredientRepository,
+                                      IngredientNameResolver ingredientNameResolver) {
         this.ingredientRepository = ingredientRepository;
+        this.ingredientNameResolver = ingredientNameResolver;
     }
 
     @Override
@@ -38,7 +42,8 @@ public class IngredientImageServiceImpl implements IngredientImageService {
             return FALLBACK_MESSAGE;
         }
 
-        String key = ingredientName.trim().toLowerCase();
+        // "Tomatoes" and "tomato" share one image
+        String key = ingredientNameResolver.canonicalName(ingredientName);
 
         // ✅ 1. Check cache first
         if (cache.containsKey(key)) {
@@ -69,7 +74,7 @@ public class IngredientImageServiceImpl implements IngredientImageService {
         cache.put(key, imageUrl);
 
         // ✅ 3. Persist in DB
-        Optional<Ingredient> existingIngredient = ingredientRepository.findByNameIgnoreCase(key);
+        Optional<Ingredient> existingIngredient = ingredientRepository.findByName(key);
         if (existingIngredient.isPresent()) {
             Ingredient ingredient = existingIngredient.get();
             ingredient.setImageUrl(imageUrl);
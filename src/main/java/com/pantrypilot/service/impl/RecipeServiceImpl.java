@@ -1,23 +1,57 @@
 package com.pantrypilot.service.impl;
 
+import com.pantrypilot.dto.IngredientDTO;
+import com.pantrypilot.dto.RecipeDTO;
+import com.pantrypilot.dto.RecipeInstructionsView;
+import com.pantrypilot.dto.RecipeSummaryRow;
 import com.pantrypilot.model.PantryIngredient;
 import com.pantrypilot.model.Recipe;
 import com.pantrypilot.model.RecipeIngredient;
+import com.pantrypilot.repository.RecipeIngredientRepository;
 import com.pantrypilot.repository.RecipeRepository;
+import com.pantrypilot.service.MatchResultCache;
+import com.pantrypilot.service.RecipeIndexService;
 import com.pantrypilot.service.RecipeService;
-import com.pantrypilot.util.UnitConverter;
+import com.pantrypilot.util.IngredientNames;
+import com.pantrypilot.util.PooledSequence;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 public class RecipeServiceImpl implements RecipeService {
 
+    private static final double MATCH_THRESHOLD = 0.75; // ✅ at least 75% ingredients available
+
     private final RecipeRepository recipeRepository;
+    private final RecipeIndexService recipeIndexService;
+    private final MatchResultCache matchResultCache;
+    private final JdbcTemplate jdbcTemplate;
+
+    // Same block size as allocationSize on the entities
+    private final PooledSequence recipeIds;
+    private final PooledSequence ingredientIds;
 
-    public RecipeServiceImpl(RecipeRepository recipeRepository) {
+    @Value("${matching.max-results:200}")
+    private int maxResults;
+
+    public RecipeServiceImpl(RecipeRepository recipeRepository, RecipeIndexService recipeIndexService,
+            MatchResultCache matchResultCache, RecipeIngredientRepository recipeIngredientRepository,
+            JdbcTemplate jdbcTemplate) {
         this.recipeRepository = recipeRepository;
+        this.recipeIndexService = recipeIndexService;
+        this.matchResultCache = matchResultCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.recipeIds = new PooledSequence(recipeRepository::nextIdBlock, 50);
+        this.ingredientIds = new PooledSequence(recipeIngredientRepository::nextIdBlock, 50);
     }
 
     @Override
@@ -25,27 +59,34 @@ public class RecipeServiceImpl implements RecipeService {
         for (RecipeIngredient ingredient : recipe.getIngredients()) {
             ingredient.setRecipe(recipe);
         }
-        return recipeRepository.save(recipe);
+        Recipe saved = recipeRepository.save(recipe);
+        recipeIndexService.addRecipe(saved);
+        matchResultCache.invalidateAll();
+        return saved;
     }
 
     @Override
     public void deleteRecipeById(Long id) {
         recipeRepository.deleteById(id);
+        recipeIndexService.removeRecipe(id);
+        matchResultCache.invalidateAll();
     }
 
     @Override
     public List<Recipe> getAllRecipes() {
-        return recipeRepository.findAll();
+        return recipeRepository.findAllWithIngredients();
     }
 
     @Override
     public void clearAllRecipes() {
         recipeRepository.deleteAll();
+        recipeIndexService.clear();
+        matchResultCache.invalidateAll();
     }
 
     @Override
     public Recipe getRecipeById(Long id) {
-        return recipeRepository.findById(id).orElse(null);
+        return recipeRepository.findWithIngredientsById(id).orElse(null);
     }
 
     @Override
@@ -63,41 +104,92 @@ public class RecipeServiceImpl implements RecipeService {
             int maxPrepTime,
             List<PantryIngredient> pantryIngredients) {
 
-        Set<String> ingredientNames = pantryIngredients.stream()
-                .map(pi -> pi.getIngredientName().toLowerCase())
-                .collect(Collectors.toSet());
+        List<Long> matchedIds = findMatchingRecipeIds(minPrepTime, maxPrepTime, pantryIngredients);
+        if (matchedIds.isEmpty())
+            return new ArrayList<>();
 
-        // Step 1: DB fetch (prepTime + ingredient names)
-        List<Recipe> candidateRecipes = recipeRepository.findByPrepTimeAndIngredients(
-                minPrepTime, maxPrepTime, ingredientNames);
+        // Recipes and ingredients in one query instead of one lazy SELECT per recipe
+        return new ArrayList<>(recipeRepository.findWithIngredientsByIdIn(matchedIds));
+    }
 
-        // Step 2: In-memory filtering (quantity/unit + 80% threshold)
-        List<Recipe> filteredRecipes = new ArrayList<>();
-        for (Recipe recipe : candidateRecipes) {
-            int totalIngredients = recipe.getIngredients().size();
-            int matchedCount = 0;
+    @Override
+    public List<Long> findMatchingRecipeIds(
+            int minPrepTime,
+            int maxPrepTime,
+            List<PantryIngredient> pantryIngredients) {
 
-            for (RecipeIngredient ri : recipe.getIngredients()) {
-                Optional<PantryIngredient> matchingPantry = pantryIngredients.stream()
-                        .filter(pi -> pi.getIngredientName().equalsIgnoreCase(ri.getIngredientName()))
-                        .findFirst();
-
-                if (matchingPantry.isPresent()) {
-                    PantryIngredient pi = matchingPantry.get();
-                    double availableQty = UnitConverter.convert(pi.getQuantity(), pi.getUnit(), ri.getUnit());
-                    if (availableQty >= ri.getQuantity()) {
-                        matchedCount++;
-                    }
-                }
-            }
+        // Fast path: posting-list merge against the resident index, no DB round trip
+        // for the threshold check.
+        if (recipeIndexService.isLoaded()) {
+            return recipeIndexService.findMatchingRecipeIds(minPrepTime, maxPrepTime, pantryIngredients);
+        }
+
+        // Otherwise let Postgres do the counting and return only qualifying IDs.
+        // One entry per distinct name key (same key as normalized_name and the index), first pantry entry wins.
+        Map<String, PantryIngredient> pantryByName = new LinkedHashMap<>();
+        for (PantryIngredient pi : pantryIngredients) {
+            if (pi.getIngredientName() != null)
+                pantryByName.putIfAbsent(IngredientNames.key(pi.getIngredientName()), pi);
+        }
+        if (pantryByName.isEmpty())
+            return new ArrayList<>();
+
+        int size = pantryByName.size();
+        String[] names = new String[size];
+        String[] dimensions = new String[size];
+        Double[] baseQuantities = new Double[size];
+        Double[] rawQuantities = new Double[size];
+        int i = 0;
+        for (Map.Entry<String, PantryIngredient> e : pantryByName.entrySet()) {
+            names[i] = e.getKey();
+            dimensions[i] = e.getValue().getParsedUnit().getDimension().name();
+            baseQuantities[i] = e.getValue().getBaseQuantity();
+            rawQuantities[i] = e.getValue().getQuantity();
+            i++;
+        }
+
+        return recipeRepository.findIdsByCoverage(minPrepTime, maxPrepTime, names, dimensions,
+                baseQuantities, rawQuantities, MATCH_THRESHOLD, maxResults);
+    }
+
+    @Override
+    public List<RecipeDTO> getRecipeSummaries(List<Long> recipeIds) {
+        if (recipeIds == null || recipeIds.isEmpty())
+            return new ArrayList<>();
 
-            double matchRatio = (double) matchedCount / totalIngredients;
-            if (matchRatio >= 0.75) { // ✅ at least 75% ingredients available
-                filteredRecipes.add(recipe);
+        // Rows come back ordered by recipe, one per ingredient
+        Map<Long, RecipeDTO> byId = new HashMap<>();
+        for (RecipeSummaryRow row : recipeRepository.findSummaryRowsByIdIn(recipeIds)) {
+            RecipeDTO dto = byId.computeIfAbsent(row.getRecipeId(), id -> new RecipeDTO(
+                    id, row.getTitle(), null, row.getPrepTime(), new ArrayList<>()));
+            if (row.getIngredientId() != null) {
+                dto.getIngredients().add(new IngredientDTO(row.getIngredientId(), row.getIngredientName(),
+                        row.getQuantity() != null ? row.getQuantity() : 0, row.getUnit(), null));
             }
         }
 
-        return filteredRecipes;
+        List<RecipeDTO> summaries = new ArrayList<>();
+        for (Long id : recipeIds) {
+            RecipeDTO dto = byId.get(id);
+            if (dto != null)
+                summaries.add(dto);
+        }
+        return summaries;
+    }
+
+    @Override
+    public void loadInstructions(List<RecipeDTO> recipes) {
+        Map<Long, RecipeDTO> missing = new HashMap<>();
+        for (RecipeDTO dto : recipes) {
+            if (dto.getId() != null && dto.getInstructions() == null)
+                missing.put(dto.getId(), dto);
+        }
+        if (missing.isEmpty())
+            return;
+
+        for (RecipeInstructionsView view : recipeRepository.findInstructionsByIdIn(missing.keySet())) {
+            missing.get(view.getId()).setInstructions(view.getInstructions());
+        }
     }
 
     @Override
@@ -135,7 +227,146 @@ public class RecipeServiceImpl implements RecipeService {
 
         recipe.setIngredients(recipeIngredients);
 
-        return recipeRepository.save(recipe);
+        Recipe saved = recipeRepository.save(recipe);
+        recipeIndexService.addRecipe(saved);
+        return saved;
     }
 
+    @Override
+    public long reserveRecipeId() {
+        return recipeIds.nextId();
+    }
+
+    /**
+     * Writes the batch over plain JDBC: one multi-row INSERT for the recipes
+     * (ON CONFLICT on the unique title, RETURNING what was inserted) and one for
+     * the ingredients of the inserted ones, both built from unnest'ed arrays.
+     * The in-memory recipes are not modified.
+     */
+    @Override
+    @Transactional
+    public List<Recipe> saveAIRecipes(List<Recipe> recipes) {
+        if (recipes.isEmpty())
+            return Collections.emptyList();
+        for (Recipe recipe : recipes) {
+            if (recipe.getId() == null)
+                recipe.setId(reserveRecipeId());
+        }
+
+        Set<Long> inserted = new HashSet<>(jdbcTemplate.query(con -> insertRecipes(con, recipes),
+                (rs, rowNum) -> rs.getLong(1)));
+
+        List<Recipe> newRecipes = new ArrayList<>();
+        Set<String> skippedTitles = new HashSet<>();
+        for (Recipe recipe : recipes) {
+            if (inserted.contains(recipe.getId())) {
+                newRecipes.add(recipe);
+            } else {
+                skippedTitles.add(recipe.getTitle());
+            }
+        }
+        if (!newRecipes.isEmpty())
+            jdbcTemplate.update(con -> insertIngredients(con, newRecipes));
+
+        Map<String, Recipe> byTitle = new HashMap<>();
+        for (Recipe recipe : newRecipes) {
+            byTitle.put(recipe.getTitle(), recipe);
+        }
+        if (!skippedTitles.isEmpty()) {
+            for (Recipe existing : recipeRepository.findByTitleIn(skippedTitles)) {
+                byTitle.putIfAbsent(existing.getTitle(), existing);
+            }
+        }
+
+        List<Recipe> finalRecipes = new ArrayList<>();
+        for (Recipe recipe : recipes) {
+            Recipe stored = inserted.contains(recipe.getId()) ? recipe : byTitle.get(recipe.getTitle());
+            if (stored != recipe)
+                System.out.println("Duplicate recipe found, using existing: " + recipe.getTitle());
+            finalRecipes.add(stored);
+        }
+
+        // Only index what actually got committed
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                newRecipes.forEach(recipeIndexService::addRecipe);
+            }
+        });
+
+        return finalRecipes;
+    }
+
+    private PreparedStatement insertRecipes(Connection con, List<Recipe> recipes) throws SQLException {
+        int n = recipes.size();
+        Long[] ids = new Long[n];
+        String[] titles = new String[n];
+        String[] instructions = new String[n];
+        Integer[] prepTimes = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            Recipe recipe = recipes.get(i);
+            ids[i] = recipe.getId();
+            titles[i] = recipe.getTitle();
+            instructions[i] = recipe.getInstructions();
+            prepTimes[i] = recipe.getPrepTime();
+        }
+
+        PreparedStatement ps = con.prepareStatement(
+                "INSERT INTO recipe (id, title, instructions, prep_time) "
+                        + "SELECT * FROM unnest(?::bigint[], ?::text[], ?::text[], ?::int[]) "
+                        + "ON CONFLICT (title) DO NOTHING RETURNING id");
+        ps.setArray(1, con.createArrayOf("bigint", ids));
+        ps.setArray(2, con.createArrayOf("text", titles));
+        ps.setArray(3, con.createArrayOf("text", instructions));
+        ps.setArray(4, con.createArrayOf("int4", prepTimes));
+        return ps;
+    }
+
+    private PreparedStatement insertIngredients(Connection con, List<Recipe> recipes) throws SQLException {
+        List<RecipeIngredient> rows = new ArrayList<>();
+        List<Long> recipeIdsOfRows = new ArrayList<>();
+        for (Recipe recipe : recipes) {
+            if (recipe.getIngredients() == null)
+                continue;
+            for (RecipeIngredient ri : recipe.getIngredients()) {
+                rows.add(ri);
+                recipeIdsOfRows.add(recipe.getId());
+            }
+        }
+
+        int n = rows.size();
+        Long[] ids = new Long[n];
+        Long[] recipeIdArray = recipeIdsOfRows.toArray(new Long[0]);
+        String[] names = new String[n];
+        String[] normalizedNames = new String[n];
+        Double[] quantities = new Double[n];
+        String[] units = new String[n];
+        String[] dimensions = new String[n];
+        Double[] baseQuantities = new Double[n];
+        for (int i = 0; i < n; i++) {
+            RecipeIngredient ri = rows.get(i);
+            ids[i] = ingredientIds.nextId();
+            names[i] = ri.getIngredientName();
+            normalizedNames[i] = ri.getNormalizedName();
+            quantities[i] = ri.getQuantity();
+            units[i] = ri.getUnit();
+            dimensions[i] = ri.getUnitDimension() != null ? ri.getUnitDimension().name() : null;
+            baseQuantities[i] = ri.getBaseQuantity();
+        }
+
+        PreparedStatement ps = con.prepareStatement(
+                "INSERT INTO recipe_ingredient (id, recipe_id, ingredient_name, normalized_name, quantity, unit, "
+                        + "unit_dimension, base_quantity) "
+                        + "SELECT * FROM unnest(?::bigint[], ?::bigint[], ?::text[], ?::text[], ?::float8[], "
+                        + "?::text[], ?::text[], ?::float8[])");
+        ps.setArray(1, con.createArrayOf("bigint", ids));
+        ps.setArray(2, con.createArrayOf("bigint", recipeIdArray));
+        ps.setArray(3, con.createArrayOf("text", names));
+        ps.setArray(4, con.createArrayOf("text", normalizedNames));
+        ps.setArray(5, con.createArrayOf("float8", quantities));
+        ps.setArray(6, con.createArrayOf("text", units));
+        ps.setArray(7, con.createArrayOf("text", dimensions));
+        ps.setArray(8, con.createArrayOf("float8", baseQuantities));
+        return ps;
+    }
 }
@@ -0,0 +1,104 @@
+package com.pantrypilot.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pantrypilot.service.RecipeGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Offline stand-in for Gemini (ai.provider=stub) for load tests and CI.
+ *
+ * Builds recipes from the given ingredients and streams them as a fenced JSON
+ * array, one object per chunk. Total latency is log-normal around
+ * {@code ai.stub.latency-median-ms}, spread over the recipes; a call fails
+ * with {@code ai.stub.failure-rate}, and each recipe is invalid (too many
+ * ingredients, or no title) with {@code ai.stub.invalid-rate}.
+ */
+@Service
+@ConditionalOnProperty(name = "ai.provider", havingValue = "stub")
+public class StubRecipeGenerator implements RecipeGenerator {
+
+    private static final String[] STYLES = {"Skillet", "Curry", "Stir Fry", "Bake", "Salad", "Soup", "Wrap", "Bowl"};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${ai.stub.latency-median-ms:2000}")
+    private long latencyMedianMs;
+
+    // Log-normal sigma; ~1 gives a long production-like tail
+    @Value("${ai.stub.latency-sigma:0.6}")
+    private double latencySigma;
+
+    @Value("${ai.stub.failure-rate:0.02}")
+    private double failureRate;
+
+    @Value("${ai.stub.invalid-rate:0.15}")
+    private double invalidRate;
+
+    @Override
+    public void generate(String prompt, List<Map<String, Object>> ingredients, int minPrepTime, int maxPrepTime,
+                         int count, Consumer<String> onChunk) throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long totalMs = (long) (latencyMedianMs * Math.exp(latencySigma * random.nextGaussian()));
+        long perRecipeMs = totalMs / Math.max(1, count + 1);
+
+        Thread.sleep(perRecipeMs); // time to first token
+        if (random.nextDouble() < failureRate)
+            throw new IllegalStateException("Stub generator failure");
+
+        onChunk.accept("```json\n[");
+        for (int i = 0; i < count; i++) {
+            Thread.sleep(perRecipeMs);
+            onChunk.accept((i > 0 ? ",\n" : "\n") + toJson(recipe(ingredients, minPrepTime, maxPrepTime, random)));
+        }
+        onChunk.accept("\n]\n```");
+    }
+
+    private Map<String, Object> recipe(List<Map<String, Object>> ingredients, int minPrepTime, int maxPrepTime,
+                                       ThreadLocalRandom random) {
+        List<Map<String, Object>> recipeIngredients = new ArrayList<>();
+        for (Map<String, Object> ing : ingredients) {
+            double available = ing.get("quantity") instanceof Number n ? n.doubleValue() : 1;
+            Map<String, Object> ri = new LinkedHashMap<>();
+            ri.put("ingredientName", ing.get("ingredientName"));
+            ri.put("quantity", Math.max(1, (int) Math.floor(available * random.nextDouble(0.5, 1.0))));
+            ri.put("unit", ing.get("unit") != null ? ing.get("unit") : "pcs");
+            recipeIngredients.add(ri);
+        }
+
+        boolean invalid = random.nextDouble() < invalidRate;
+        String main = ingredients.isEmpty() ? "Pantry" : String.valueOf(ingredients.get(0).get("ingredientName"));
+        String title = main + " " + STYLES[random.nextInt(STYLES.length)] + " " + random.nextInt(100_000);
+
+        Map<String, Object> recipe = new LinkedHashMap<>();
+        if (invalid && random.nextBoolean()) {
+            recipe.put("title", "");
+        } else {
+            recipe.put("title", title);
+            if (invalid) {
+                // More extras than floor(n / 0.75) allows
+                for (int i = 0; i <= ingredients.size(); i++) {
+                    recipeIngredients.add(Map.of("ingredientName", "stub extra " + i, "quantity", 1, "unit", "pcs"));
+                }
+            }
+        }
+        recipe.put("instructions", "Combine the ingredients and cook until done.");
+        recipe.put("prepTime", random.nextInt(minPrepTime, Math.max(minPrepTime, maxPrepTime) + 1));
+        recipe.put("ingredients", recipeIngredients);
+        return recipe;
+    }
+
+    private String toJson(Map<String, Object> recipe) {
+        try {
+            return objectMapper.writeValueAsString(recipe);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
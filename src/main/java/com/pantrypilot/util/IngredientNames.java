@@ -0,0 +1,71 @@
+package com.pantrypilot.util;
+
+import java.util.Map;
+import java.util.Set;
+
+public class IngredientNames {
+
+    private static final Map<String, String> ALIASES = Map.ofEntries(
+            Map.entry("scallion", "green onion"),
+            Map.entry("spring onion", "green onion"),
+            Map.entry("garbanzo bean", "chickpea"),
+            Map.entry("capsicum", "bell pepper"),
+            Map.entry("aubergine", "eggplant"),
+            Map.entry("courgette", "zucchini"),
+            Map.entry("curd", "yogurt"),
+            Map.entry("yoghurt", "yogurt"),
+            Map.entry("maida", "all purpose flour"),
+            Map.entry("plain flour", "all purpose flour"),
+            Map.entry("caster sugar", "sugar"));
+
+    // Words that look plural but aren't
+    private static final Set<String> NOT_PLURAL = Set.of(
+            "asparagus", "couscous", "hummus", "molasses", "swiss", "citrus", "lemongrass", "grass", "bass");
+
+    /**
+     * Normalized form of an ingredient name (trim + lowercase). This is what gets
+     * stored in ingredient.name and what lookups there must use so they hit the
+     * plain B-tree index.
+     */
+    public static String normalize(String name) {
+        return (name == null) ? "" : name.trim().toLowerCase();
+    }
+
+    /**
+     * The key an ingredient is stored and matched under: normalized, every word
+     * singularized and aliases replaced ("Tomatoes" -> "tomato", "scallions" ->
+     * "green onion"). Names with equal keys are the same ingredient; this is
+     * what normalized_name holds. Stored keys were written by migration V5 with
+     * a frozen copy of these rules, so changing them needs a new migration.
+     */
+    public static String key(String name) {
+        String normalized = normalize(name);
+        if (normalized.isEmpty())
+            return normalized;
+
+        String[] words = normalized.split("[^a-z0-9]+");
+        StringBuilder key = new StringBuilder(normalized.length());
+        for (String word : words) {
+            if (word.isEmpty())
+                continue;
+            if (key.length() > 0)
+                key.append(' ');
+            key.append(singular(word));
+        }
+        String k = key.toString();
+        return ALIASES.getOrDefault(k, k);
+    }
+
+    private static String singular(String word) {
+        if (word.length() <= 3 || NOT_PLURAL.contains(word) || word.endsWith("ss") || word.endsWith("us"))
+            return word;
+        if (word.endsWith("ies"))
+            return word.substring(0, word.length() - 3) + "y";
+        if (word.endsWith("oes") || word.endsWith("ches") || word.endsWith("shes")
+                || word.endsWith("xes") || word.endsWith("sses"))
+            return word.substring(0, word.length() - 2);
+        if (word.endsWith("s"))
+            return word.substring(0, word.length() - 1);
+        return word;
+    }
+}
@@ -0,0 +1,32 @@
+package com.pantrypilot.util;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Hands out IDs from a database sequence the same way Hibernate's pooled
+ * optimizer does for {@code allocationSize = blockSize}: each {@code nextval}
+ * result {@code hi} reserves {@code hi - blockSize + 1 .. hi}. IDs taken here
+ * and IDs Hibernate generates from the same sequence never collide, and
+ * neither repeats across restarts.
+ */
+public class PooledSequence {
+
+    private final LongSupplier nextval;
+    private final int blockSize;
+
+    private long next = 1;
+    private long last = 0;
+
+    public PooledSequence(LongSupplier nextval, int blockSize) {
+        this.nextval = nextval;
+        this.blockSize = blockSize;
+    }
+
+    public synchronized long nextId() {
+        if (next > last) {
+            last = nextval.getAsLong();
+            next = last - blockSize + 1;
+        }
+        return next++;
+    }
+}
@@ -0,0 +1,58 @@
+package com.pantrypilot.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent calls with equal keys into one: the first caller runs
+ * the work, everyone arriving while it is in flight waits for and gets the same
+ * result. Nothing is cached once the call completes.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /** Result of the call for this key, and whether it was shared with an earlier caller. */
+    public static class Result<V> {
+        private final V value;
+        private final boolean shared;
+
+        Result(V value, boolean shared) {
+            this.value = value;
+            this.shared = shared;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public boolean isShared() {
+            return shared;
+        }
+    }
+
+    public Result<V> run(K key, Supplier<V> call) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            try {
+                return new Result<>(existing.join(), true);
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+
+        try {
+            V value = call.get();
+            mine.complete(value);
+            return new Result<>(value, false);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.pantrypilot.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Units of measure with a fixed dimension and a factor to the dimension's base
+ * unit (g for mass, ml for volume, pieces for count).
+ *
+ * Parse a unit string once with {@link #parse(String)} and keep the result;
+ * converting is then a single multiplication.
+ */
+public enum Unit {
+
+    MILLIGRAM(Dimension.MASS, 0.001, "mg", "milligram", "milligrams"),
+    GRAM(Dimension.MASS, 1.0, "g", "gm", "gms", "gram", "grams"),
+    KILOGRAM(Dimension.MASS, 1000.0, "kg", "kgs", "kilogram", "kilograms"),
+    OUNCE(Dimension.MASS, 28.3495, "oz", "ounce", "ounces"),
+    POUND(Dimension.MASS, 453.592, "lb", "lbs", "pound", "pounds"),
+
+    MILLILITRE(Dimension.VOLUME, 1.0, "ml", "millilitre", "millilitres", "milliliter", "milliliters"),
+    LITRE(Dimension.VOLUME, 1000.0, "l", "litre", "litres", "liter", "liters"),
+    TEASPOON(Dimension.VOLUME, 5.0, "tsp", "teaspoon", "teaspoons"),
+    TABLESPOON(Dimension.VOLUME, 15.0, "tbsp", "tablespoon", "tablespoons"),
+    CUP(Dimension.VOLUME, 240.0, "cup", "cups"),
+
+    PIECE(Dimension.COUNT, 1.0, "", "pc", "pcs", "piece", "pieces", "whole", "nos", "no"),
+    DOZEN(Dimension.COUNT, 12.0, "dozen"),
+
+    /** Anything we don't recognize; quantities are kept as given. */
+    UNKNOWN(Dimension.UNKNOWN, 1.0);
+
+    public enum Dimension {
+        MASS, VOLUME, COUNT, UNKNOWN
+    }
+
+    private static final Map<String, Unit> BY_NAME = new HashMap<>();
+
+    static {
+        for (Unit unit : values()) {
+            for (String alias : unit.aliases) {
+                BY_NAME.put(alias, unit);
+            }
+        }
+    }
+
+    private final Dimension dimension;
+    private final double factor;
+    private final String[] aliases;
+
+    Unit(Dimension dimension, double factor, String... aliases) {
+        this.dimension = dimension;
+        this.factor = factor;
+        this.aliases = aliases;
+    }
+
+    /** Missing units mean a count ("2 onions"); unrecognized ones map to UNKNOWN. */
+    public static Unit parse(String unit) {
+        if (unit == null)
+            return PIECE;
+        Unit parsed = BY_NAME.get(unit.trim().toLowerCase());
+        return parsed != null ? parsed : UNKNOWN;
+    }
+
+    public Dimension getDimension() {
+        return dimension;
+    }
+
+    public double toBase(double quantity) {
+        return quantity * factor;
+    }
+
+    public double fromBase(double baseQuantity) {
+        return baseQuantity / factor;
+    }
+}
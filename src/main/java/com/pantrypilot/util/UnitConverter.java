@@ -1,35 +1,24 @@
 package com.pantrypilot.util;
 
-import java.util.HashMap;
-import java.util.Map;
+import com.pantrypilot.model.PantryIngredient;
+import com.pantrypilot.model.RecipeIngredient;
 
 public class UnitConverter {
 
-    private static final Map<String, Double> weightUnits = new HashMap<>();
-    private static final Map<String, Double> volumeUnits = new HashMap<>();
-
-    static {
-        weightUnits.put("mg", 0.001);
-        weightUnits.put("g", 1.0);
-        weightUnits.put("kg", 1000.0);
-
-        volumeUnits.put("ml", 1.0);
-        volumeUnits.put("l", 1000.0);
-        volumeUnits.put("tbsp", 15.0);
+    /**
+     * True if the available amount covers the required one. Amounts in the same
+     * dimension are compared in base units; otherwise the raw numbers are
+     * compared, which is what the old converter effectively did.
+     */
+    public static boolean isEnough(Unit.Dimension availableDimension, double availableBase, double availableRaw,
+            Unit.Dimension requiredDimension, double requiredBase, double requiredRaw) {
+        return availableDimension == requiredDimension
+                ? availableBase >= requiredBase
+                : availableRaw >= requiredRaw;
     }
 
-    public static double convert(double quantity, String fromUnit, String toUnit) {
-        if (fromUnit == null || toUnit == null) return quantity;
-
-        fromUnit = fromUnit.toLowerCase();
-        toUnit = toUnit.toLowerCase();
-
-        if (weightUnits.containsKey(fromUnit) && weightUnits.containsKey(toUnit)) {
-            return quantity * weightUnits.get(fromUnit) / weightUnits.get(toUnit);
-        } else if (volumeUnits.containsKey(fromUnit) && volumeUnits.containsKey(toUnit)) {
-            return quantity * volumeUnits.get(fromUnit) / volumeUnits.get(toUnit);
-        }
-
-        return quantity; // If units are unrecognized
+    public static boolean isEnough(PantryIngredient available, RecipeIngredient required) {
+        return isEnough(available.getParsedUnit().getDimension(), available.getBaseQuantity(), available.getQuantity(),
+                required.getParsedUnit().getDimension(), required.getBaseQuantity(), required.getQuantity());
     }
 }
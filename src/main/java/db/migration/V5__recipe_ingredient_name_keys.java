@@ -0,0 +1,97 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites recipe_ingredient.normalized_name from trim + lowercase to the
+ * ingredient key (singular words, aliases), so the SQL matching path keys
+ * names the same way as the in-memory index. Singularizing isn't expressible
+ * in plain SQL, hence a Java migration.
+ *
+ * The key rules are a frozen copy of IngredientNames.key as of this version:
+ * a migration must produce the same result wherever and whenever it runs, so
+ * it can't follow later edits to the live rules. Changing those needs a new
+ * migration that rewrites normalized_name again.
+ */
+public class V5__recipe_ingredient_name_keys extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final Map<String, String> ALIASES = Map.ofEntries(
+            Map.entry("scallion", "green onion"),
+            Map.entry("spring onion", "green onion"),
+            Map.entry("garbanzo bean", "chickpea"),
+            Map.entry("capsicum", "bell pepper"),
+            Map.entry("aubergine", "eggplant"),
+            Map.entry("courgette", "zucchini"),
+            Map.entry("curd", "yogurt"),
+            Map.entry("yoghurt", "yogurt"),
+            Map.entry("maida", "all purpose flour"),
+            Map.entry("plain flour", "all purpose flour"),
+            Map.entry("caster sugar", "sugar"));
+
+    private static final Set<String> NOT_PLURAL = Set.of(
+            "asparagus", "couscous", "hummus", "molasses", "swiss", "citrus", "lemongrass", "grass", "bass");
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection con = context.getConnection();
+        try (Statement select = con.createStatement();
+                ResultSet rs = select.executeQuery(
+                        "SELECT id, ingredient_name, normalized_name FROM recipe_ingredient "
+                                + "WHERE ingredient_name IS NOT NULL");
+                PreparedStatement update = con.prepareStatement(
+                        "UPDATE recipe_ingredient SET normalized_name = ? WHERE id = ?")) {
+            int batched = 0;
+            while (rs.next()) {
+                String key = key(rs.getString(2));
+                if (key.equals(rs.getString(3)))
+                    continue;
+                update.setString(1, key);
+                update.setLong(2, rs.getLong(1));
+                update.addBatch();
+                if (++batched % BATCH_SIZE == 0)
+                    update.executeBatch();
+            }
+            update.executeBatch();
+        }
+    }
+
+    private static String key(String name) {
+        String normalized = name == null ? "" : name.trim().toLowerCase();
+        if (normalized.isEmpty())
+            return normalized;
+
+        StringBuilder key = new StringBuilder(normalized.length());
+        for (String word : normalized.split("[^a-z0-9]+")) {
+            if (word.isEmpty())
+                continue;
+            if (key.length() > 0)
+                key.append(' ');
+            key.append(singular(word));
+        }
+        String k = key.toString();
+        return ALIASES.getOrDefault(k, k);
+    }
+
+    private static String singular(String word) {
+        if (word.length() <= 3 || NOT_PLURAL.contains(word) || word.endsWith("ss") || word.endsWith("us"))
+            return word;
+        if (word.endsWith("ies"))
+            return word.substring(0, word.length() - 3) + "y";
+        if (word.endsWith("oes") || word.endsWith("ches") || word.endsWith("shes")
+                || word.endsWith("xes") || word.endsWith("sses"))
+            return word.substring(0, word.length() - 2);
+        if (word.endsWith("s"))
+            return word.substring(0, word.length() - 1);
+        return word;
+    }
+}
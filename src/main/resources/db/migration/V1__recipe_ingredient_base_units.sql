@@ -0,0 +1,29 @@
+-- Pre-normalized quantities so coverage can be checked in SQL.
+-- Mirrors com.pantrypilot.util.Unit; new rows are filled by the application.
+
+ALTER TABLE recipe_ingredient ADD COLUMN IF NOT EXISTS unit_dimension VARCHAR(16);
+ALTER TABLE recipe_ingredient ADD COLUMN IF NOT EXISTS base_quantity DOUBLE PRECISION;
+
+UPDATE recipe_ingredient SET
+    unit_dimension = CASE
+        WHEN unit IS NULL OR LOWER(TRIM(unit)) IN ('', 'pc', 'pcs', 'piece', 'pieces', 'whole', 'nos', 'no', 'dozen') THEN 'COUNT'
+        WHEN LOWER(TRIM(unit)) IN ('mg', 'milligram', 'milligrams', 'g', 'gm', 'gms', 'gram', 'grams',
+                                   'kg', 'kgs', 'kilogram', 'kilograms', 'oz', 'ounce', 'ounces',
+                                   'lb', 'lbs', 'pound', 'pounds') THEN 'MASS'
+        WHEN LOWER(TRIM(unit)) IN ('ml', 'millilitre', 'millilitres', 'milliliter', 'milliliters',
+                                   'l', 'litre', 'litres', 'liter', 'liters', 'tsp', 'teaspoon', 'teaspoons',
+                                   'tbsp', 'tablespoon', 'tablespoons', 'cup', 'cups') THEN 'VOLUME'
+        ELSE 'UNKNOWN'
+    END,
+    base_quantity = quantity * CASE
+        WHEN LOWER(TRIM(unit)) IN ('mg', 'milligram', 'milligrams') THEN 0.001
+        WHEN LOWER(TRIM(unit)) IN ('kg', 'kgs', 'kilogram', 'kilograms', 'l', 'litre', 'litres', 'liter', 'liters') THEN 1000
+        WHEN LOWER(TRIM(unit)) IN ('oz', 'ounce', 'ounces') THEN 28.3495
+        WHEN LOWER(TRIM(unit)) IN ('lb', 'lbs', 'pound', 'pounds') THEN 453.592
+        WHEN LOWER(TRIM(unit)) IN ('tsp', 'teaspoon', 'teaspoons') THEN 5
+        WHEN LOWER(TRIM(unit)) IN ('tbsp', 'tablespoon', 'tablespoons') THEN 15
+        WHEN LOWER(TRIM(unit)) IN ('cup', 'cups') THEN 240
+        WHEN LOWER(TRIM(unit)) = 'dozen' THEN 12
+        ELSE 1
+    END
+WHERE unit_dimension IS NULL;
@@ -0,0 +1,15 @@
+-- Indexable ingredient matching: a normalized name column instead of LOWER(...) IN,
+-- plus indexes for the matching queries (nothing else creates them with ddl-auto=none).
+
+ALTER TABLE recipe_ingredient ADD COLUMN IF NOT EXISTS normalized_name VARCHAR(255);
+
+UPDATE recipe_ingredient SET normalized_name = LOWER(TRIM(ingredient_name))
+WHERE normalized_name IS NULL AND ingredient_name IS NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_recipe_ingredient_name_recipe ON recipe_ingredient (normalized_name, recipe_id);
+CREATE INDEX IF NOT EXISTS idx_recipe_ingredient_recipe ON recipe_ingredient (recipe_id);
+
+-- (prep_time, id) supersedes the single-column prep_time index
+CREATE INDEX IF NOT EXISTS idx_recipe_prep_time_id ON recipe (prep_time, id);
+DROP INDEX IF EXISTS idx_prep_time;
+
@@ -0,0 +1,21 @@
+-- Sequence-backed IDs allocated in blocks of 50 (matches allocationSize on the
+-- entities) so Hibernate can batch INSERTs; IDENTITY columns force one round
+-- trip per row. Existing identity columns are relaxed to BY DEFAULT so the
+-- application-supplied IDs are accepted.
+
+DO $$
+DECLARE
+    t TEXT;
+    ident CHAR;
+BEGIN
+    FOREACH t IN ARRAY ARRAY['recipe', 'recipe_ingredient'] LOOP
+        EXECUTE format('CREATE SEQUENCE IF NOT EXISTS %I INCREMENT BY 50', t || '_seq');
+        EXECUTE format('SELECT setval(%L, COALESCE(MAX(id), 0) + 50, false) FROM %I', t || '_seq', t);
+
+        SELECT attidentity INTO ident FROM pg_attribute
+        WHERE attrelid = t::regclass AND attname = 'id';
+        IF ident = 'a' THEN
+            EXECUTE format('ALTER TABLE %I ALTER COLUMN id SET GENERATED BY DEFAULT', t);
+        END IF;
+    END LOOP;
+END $$;
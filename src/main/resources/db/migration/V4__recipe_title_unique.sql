@@ -0,0 +1,14 @@
+-- AI recipes are written with INSERT ... ON CONFLICT (title), which needs a
+-- unique index on title. Databases created by ddl-auto already have one from
+-- @Column(unique = true); only create it where it is missing.
+
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1 FROM pg_index i
+        JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = i.indkey[0]
+        WHERE i.indrelid = 'recipe'::regclass AND i.indisunique AND i.indnatts = 1 AND a.attname = 'title'
+    ) THEN
+        CREATE UNIQUE INDEX idx_recipe_title ON recipe (title);
+    END IF;
+END $$;
@@ -0,0 +1,44 @@
+package com.pantrypilot;
+
+import java.util.concurrent.Callable;
+import java.util.function.LongSupplier;
+
+/**
+ * Minimal timing loop for the {@code benchmark}-tagged tests (run with
+ * {@code mvn test -Pbenchmark}): warms the operation up so the JIT has
+ * compiled it, then reports the mean time per call. Results are folded into a
+ * volatile sink so the work can't be optimized away.
+ */
+public final class BenchmarkTimer {
+
+    private static volatile long sink;
+
+    private BenchmarkTimer() {
+    }
+
+    /** Mean nanoseconds per call of {@code op} over {@code iterations} timed calls. */
+    public static double nanosPerOp(String label, int warmups, int iterations, LongSupplier op) {
+        long acc = 0;
+        for (int i = 0; i < warmups; i++) {
+            acc += op.getAsLong();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            acc += op.getAsLong();
+        }
+        double perOp = (double) (System.nanoTime() - start) / iterations;
+        sink += acc;
+        System.out.printf("%-48s %,14.0f ns/op%n", label, perOp);
+        return perOp;
+    }
+
+    /** Wall-clock milliseconds of one run of {@code op}, for runs too long to repeat. */
+    public static long millis(String label, Callable<?> op) throws Exception {
+        long start = System.nanoTime();
+        Object result = op.call();
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        sink += System.identityHashCode(result);
+        System.out.printf("%-48s %,14d ms%n", label, ms);
+        return ms;
+    }
+}
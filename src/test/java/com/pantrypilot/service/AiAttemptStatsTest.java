@@ -0,0 +1,78 @@
+package com.pantrypilot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class AiAttemptStatsTest {
+
+    private SimpleMeterRegistry registry;
+    private AiAttemptStats stats;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        stats = new AiAttemptStats(registry);
+    }
+
+    @Test
+    void percentileFallsBackUntilThereAreEnoughSamples() {
+        for (int i = 1; i < 20; i++) {
+            stats.recordLatency(i);
+        }
+        assertThat(stats.latencyPercentile(0.9, 5000)).isEqualTo(5000);
+
+        stats.recordLatency(20);
+        assertThat(stats.latencyPercentile(0.9, 5000)).isEqualTo(18);
+    }
+
+    @Test
+    void percentilesOverTheWindow() {
+        for (int i = 100; i >= 1; i--) {
+            stats.recordLatency(i);
+        }
+        assertThat(stats.latencyPercentile(0.5, 0)).isEqualTo(50);
+        assertThat(stats.latencyPercentile(0.9, 0)).isEqualTo(90);
+        assertThat(stats.latencyPercentile(1.0, 0)).isEqualTo(100);
+        assertThat(stats.latencyPercentile(0.0, 0)).isEqualTo(1);
+    }
+
+    @Test
+    void oldLatenciesLeaveTheWindow() {
+        for (int i = 0; i < 200; i++) {
+            stats.recordLatency(10_000);
+        }
+        for (int i = 0; i < 200; i++) {
+            stats.recordLatency(10);
+        }
+        assertThat(stats.latencyPercentile(1.0, 0)).isEqualTo(10);
+    }
+
+    @Test
+    void rejectionRateIsAnEwmaPerPantrySizeBucket() {
+        stats.recordOutcome(2, 10, 5);
+        assertThat(stats.rejectionRate(3)).isCloseTo(0.1, within(1e-9));
+        assertThat(stats.rejectionRate(1)).isCloseTo(0.1, within(1e-9));
+        assertThat(stats.rejectionRate(4)).isZero();
+        assertThat(stats.rejectionRate(50)).isZero();
+
+        for (int i = 0; i < 100; i++) {
+            stats.recordOutcome(12, 10, 2);
+        }
+        assertThat(stats.rejectionRate(11)).isCloseTo(0.8, within(1e-6));
+        assertThat(registry.get("pantrypilot.ai.rejection.rate").tag("pantry.size", ">10").gauge().value())
+                .isCloseTo(0.8, within(1e-6));
+    }
+
+    @Test
+    void ignoresEmptyRequestsAndClampsExtraRecipes() {
+        stats.recordOutcome(5, 0, 0);
+        assertThat(stats.rejectionRate(5)).isZero();
+
+        stats.recordOutcome(5, 4, 6);
+        assertThat(stats.rejectionRate(5)).isZero();
+    }
+}
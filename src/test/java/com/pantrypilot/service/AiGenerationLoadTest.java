@@ -0,0 +1,165 @@
+package com.pantrypilot.service;
+
+import com.pantrypilot.BenchmarkTimer;
+import com.pantrypilot.model.Recipe;
+import com.pantrypilot.service.impl.StubRecipeGenerator;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Concurrent AI generations against the stub generator, with recipe IDs
+ * reserved and recipes written in transactions on a real 5-connection Hikari
+ * pool (the JDBC connections behind it are stubs). Compared with the same load
+ * when each generation runs inside a transaction, holding a pool connection
+ * for its whole call.
+ */
+@Tag("benchmark")
+class AiGenerationLoadTest {
+
+    private static final int POOL_SIZE = 5;
+    private static final int USERS = 30;
+    private static final long LATENCY_MS = 300;
+
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicInteger written = new AtomicInteger();
+    // Generations that ran while their thread had a transaction open
+    private final AtomicInteger inTransaction = new AtomicInteger();
+    private final AtomicInteger pantries = new AtomicInteger();
+    private final Set<Long> served = ConcurrentHashMap.newKeySet();
+    private final ExecutorService users = Executors.newFixedThreadPool(USERS);
+
+    private HikariDataSource pool;
+    private TransactionTemplate transactions;
+    private RecipeAIService recipeAIService;
+    private RecipeWriteBehindQueue writeBehindQueue;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pool = new HikariDataSource();
+        pool.setDataSource(stubDataSource());
+        pool.setMaximumPoolSize(POOL_SIZE);
+        pool.setConnectionTimeout(30_000);
+        transactions = new TransactionTemplate(new DataSourceTransactionManager(pool));
+
+        RecipeService recipeService = mock(RecipeService.class);
+        when(recipeService.reserveRecipeId()).thenAnswer(inv -> transactions.execute(tx -> ids.incrementAndGet()));
+        when(recipeService.saveAIRecipes(anyList())).thenAnswer(inv -> transactions.execute(tx -> {
+            sleep(20);
+            List<Recipe> batch = inv.getArgument(0);
+            written.addAndGet(batch.size());
+            return batch;
+        }));
+
+        StubRecipeGenerator stub = new StubRecipeGenerator();
+        ReflectionTestUtils.setField(stub, "latencyMedianMs", LATENCY_MS);
+        ReflectionTestUtils.setField(stub, "latencySigma", 0.0);
+        ReflectionTestUtils.setField(stub, "failureRate", 0.0);
+        ReflectionTestUtils.setField(stub, "invalidRate", 0.0);
+        RecipeGenerator generator = (prompt, ingredients, minPrepTime, maxPrepTime, count, onChunk) -> {
+            if (TransactionSynchronizationManager.isActualTransactionActive())
+                inTransaction.incrementAndGet();
+            stub.generate(prompt, ingredients, minPrepTime, maxPrepTime, count, onChunk);
+        };
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        IngredientNameResolver resolver = new IngredientNameResolver(new IngredientDictionary());
+        writeBehindQueue = new RecipeWriteBehindQueue(recipeService, mock(RecipeCacheService.class),
+                mock(MatchResultCache.class), new RecipeSimilarityIndex(resolver, 0.7), 500, 200, 2000, registry);
+        recipeAIService = new RecipeAIService(writeBehindQueue, generator, registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        users.shutdownNow();
+        pool.close();
+    }
+
+    @Test
+    void throughputIsNotBoundedByThePoolSize() throws Exception {
+        // Warm-up: class loading and the JIT would otherwise land on the first timing
+        runUsers(false);
+        writeBehindQueue.flushAll();
+        written.set(0);
+        served.clear();
+
+        long decoupledMs = BenchmarkTimer.millis(USERS + " generations, no transaction", () -> runUsers(false));
+        writeBehindQueue.flushAll();
+        // Near-duplicates within a call are served as the first one and written once
+        assertThat(written.get()).isEqualTo(served.size()).isGreaterThan(USERS);
+        assertThat(inTransaction.get()).isZero();
+
+        long heldMs = BenchmarkTimer.millis(USERS + " generations, each in a transaction", () -> runUsers(true));
+        assertThat(inTransaction.get()).isEqualTo(USERS);
+
+        // Holding connections serializes into USERS / POOL_SIZE waves of calls
+        assertThat(heldMs).isGreaterThanOrEqualTo(LATENCY_MS * USERS / POOL_SIZE);
+        assertThat(decoupledMs).isLessThan(heldMs / 2);
+    }
+
+    private int runUsers(boolean inTransaction) throws Exception {
+        List<Future<List<Recipe>>> calls = new ArrayList<>();
+        for (int u = 0; u < USERS; u++) {
+            // Distinct pantries, across runs too, so no generation is shared or a near-duplicate
+            List<Map<String, Object>> pantry = List.of(
+                    Map.of("ingredientName", "spice" + pantries.incrementAndGet(), "quantity", 4, "unit", "pcs"),
+                    Map.of("ingredientName", "rice", "quantity", 500, "unit", "g"));
+            Callable<List<Recipe>> generate = () -> recipeAIService.generateRecipes(pantry, 10, 40, Set.of(), 4);
+            calls.add(users.submit(inTransaction ? () -> transactions.execute(tx -> call(generate)) : generate));
+        }
+        for (Future<List<Recipe>> call : calls) {
+            List<Recipe> recipes = call.get(60, TimeUnit.SECONDS);
+            assertThat(recipes).hasSize(4);
+            recipes.forEach(recipe -> served.add(recipe.getId()));
+        }
+        return calls.size();
+    }
+
+    /** JDBC connections that accept whatever the pool and transaction manager ask of them. */
+    private static DataSource stubDataSource() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenAnswer(inv -> {
+            Connection connection = mock(Connection.class);
+            when(connection.isValid(anyInt())).thenReturn(true);
+            when(connection.getAutoCommit()).thenReturn(true);
+            return connection;
+        });
+        return dataSource;
+    }
+
+    private static <T> T call(Callable<T> work) {
+        try {
+            return work.call();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.pantrypilot.service;
+
+import com.pantrypilot.BenchmarkTimer;
+import com.pantrypilot.model.PantryIngredient;
+import com.pantrypilot.model.Recipe;
+import com.pantrypilot.model.RecipeIngredient;
+import com.pantrypilot.repository.RecipeRepository;
+import com.pantrypilot.util.UnitConverter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * "Can make" over a 100k-recipe catalog: the index's signature pre-filter
+ * against looking up every recipe's ingredients in a pantry map, as
+ * matchRecipes did. Both compare pre-parsed quantities, so only the
+ * pre-filter differs.
+ */
+@Tag("benchmark")
+class CompleteMatchBenchmarkTest {
+
+    private static final int RECIPES = 100_000;
+
+    private final ForkJoinPool pool = new ForkJoinPool(1);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void signaturesRejectMostRecipesBeforeTheQuantityCheck() {
+        SyntheticCatalog catalog = new SyntheticCatalog(13, 200);
+        List<Recipe> recipes = catalog.recipes(RECIPES, catalog::uniformPrepTime);
+        List<PantryIngredient> pantry = catalog.pantry(40);
+
+        RecipeRepository recipeRepository = mock(RecipeRepository.class);
+        when(recipeRepository.findAllWithIngredients()).thenReturn(recipes);
+        IngredientDictionary dictionary = new IngredientDictionary();
+        IngredientNameResolver resolver = new IngredientNameResolver(dictionary);
+        RecipeIndexService index = new RecipeIndexService(recipeRepository, dictionary, resolver,
+                new RecipeSimilarityIndex(resolver, 0.7), pool);
+        ReflectionTestUtils.setField(index, "parallelThreshold", Integer.MAX_VALUE);
+        ReflectionTestUtils.setField(index, "partitionSize", 8192);
+        index.rebuild();
+
+        Map<String, PantryIngredient> pantryMap = new HashMap<>();
+        for (PantryIngredient pi : pantry) {
+            pantryMap.putIfAbsent(pi.getIngredientName().trim().toLowerCase(), pi);
+        }
+        List<Long> expected = recipes.stream().filter(r -> canMakeRecipe(r, pantryMap)).map(Recipe::getId).toList();
+        assertThat(expected).isNotEmpty();
+        assertThat(index.findCompleteMatchIds(pantry)).containsExactlyInAnyOrderElementsOf(expected);
+        System.out.println(expected.size() + " of " + RECIPES + " recipes can be made");
+
+        double scan = BenchmarkTimer.nanosPerOp("100k recipes, check every recipe", 20, 50, () -> {
+            long count = 0;
+            for (Recipe recipe : recipes) {
+                if (canMakeRecipe(recipe, pantryMap))
+                    count++;
+            }
+            return count;
+        });
+        double filtered = BenchmarkTimer.nanosPerOp("100k recipes, signature pre-filter", 20, 50,
+                () -> index.findCompleteMatchIds(pantry).size());
+
+        assertThat(filtered).isLessThan(scan);
+    }
+
+    /** Per recipe, every ingredient looked up by name and its amount compared. */
+    private static boolean canMakeRecipe(Recipe recipe, Map<String, PantryIngredient> pantryMap) {
+        for (RecipeIngredient req : recipe.getIngredients()) {
+            PantryIngredient pantry = pantryMap.get(req.getIngredientName().trim().toLowerCase());
+            if (pantry == null || !UnitConverter.isEnough(pantry, req))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,90 @@
+package com.pantrypilot.service;
+
+import com.pantrypilot.model.PantryIngredient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngredientNameResolverTest {
+
+    private IngredientDictionary dictionary;
+    private IngredientNameResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        dictionary = new IngredientDictionary();
+        resolver = new IngredientNameResolver(dictionary);
+        for (String name : List.of("coconut milk", "bell pepper", "green onion", "olive oil", "tomato", "chickpea")) {
+            resolver.intern(name);
+        }
+    }
+
+    @Test
+    void keyOfSingularizesAndAppliesAliases() {
+        assertThat(IngredientNameResolver.keyOf("  Tomatoes ")).isEqualTo("tomato");
+        assertThat(IngredientNameResolver.keyOf("Scallions")).isEqualTo("green onion");
+        assertThat(IngredientNameResolver.keyOf("garbanzo beans")).isEqualTo("chickpea");
+        assertThat(IngredientNameResolver.keyOf("berries")).isEqualTo("berry");
+        assertThat(IngredientNameResolver.keyOf("asparagus")).isEqualTo("asparagus");
+        assertThat(IngredientNameResolver.keyOf("glass")).isEqualTo("glass");
+    }
+
+    @Test
+    void resolvesExactKeys() {
+        assertThat(resolver.resolve("Tomatoes")).isEqualTo(dictionary.idOf("tomato"));
+        assertThat(resolver.resolve("spring onions")).isEqualTo(dictionary.idOf("green onion"));
+        assertThat(resolver.resolve("capsicum")).isEqualTo(dictionary.idOf("bell pepper"));
+    }
+
+    @Test
+    void genericNameDoesNotResolveToMoreSpecificIngredient() {
+        assertThat(resolver.resolve("milk")).isEqualTo(-1);
+        assertThat(resolver.resolve("pepper")).isEqualTo(-1);
+        assertThat(resolver.resolve("onion")).isEqualTo(-1);
+        assertThat(resolver.resolve("oil")).isEqualTo(-1);
+    }
+
+    @Test
+    void moreSpecificNameResolvesToGenericIngredient() {
+        assertThat(resolver.resolve("red bell pepper")).isEqualTo(dictionary.idOf("bell pepper"));
+        assertThat(resolver.resolve("extra olive oil")).isEqualTo(dictionary.idOf("olive oil"));
+    }
+
+    @Test
+    void wordsMustMatchWhole() {
+        resolver.intern("boiled egg");
+        assertThat(resolver.resolve("oil")).isEqualTo(-1);
+        assertThat(resolver.resolve("boil")).isEqualTo(-1);
+    }
+
+    @Test
+    void newKeysInvalidateCachedMisses() {
+        assertThat(resolver.resolve("milk")).isEqualTo(-1);
+        int milk = resolver.intern("milk");
+        assertThat(resolver.resolve("milk")).isEqualTo(milk);
+        assertThat(resolver.resolve("coconut milk")).isNotEqualTo(milk);
+    }
+
+    @Test
+    void pantryKeepsGenericAndSpecificNamesApart() {
+        int milk = resolver.intern("milk");
+        PantryLookup pantry = PantryLookup.of(List.of(
+                pantryItem("milk", 500, "ml"),
+                pantryItem("coconut milk", 200, "ml")), resolver);
+
+        assertThat(pantry.size()).isEqualTo(2);
+        assertThat(pantry.baseQuantityAt(pantry.indexOf(milk))).isEqualTo(500);
+        assertThat(pantry.baseQuantityAt(pantry.indexOf(dictionary.idOf("coconut milk")))).isEqualTo(200);
+    }
+
+    private static PantryIngredient pantryItem(String name, double quantity, String unit) {
+        PantryIngredient pi = new PantryIngredient();
+        pi.setIngredientName(name);
+        pi.setUnit(unit);
+        pi.setQuantity(quantity);
+        return pi;
+    }
+}
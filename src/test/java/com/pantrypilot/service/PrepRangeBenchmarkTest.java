@@ -0,0 +1,89 @@
+package com.pantrypilot.service;
+
+import com.pantrypilot.BenchmarkTimer;
+import com.pantrypilot.model.PantryIngredient;
+import com.pantrypilot.model.Recipe;
+import com.pantrypilot.repository.RecipeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Prep-time pruning on a 100k-recipe catalog where most recipes are quick and
+ * few are long. For each range {@link RecipeIndexService#findTopMatches} is
+ * timed forced down both ways of scoring it, scanning the range's prep-time
+ * slice and walking the pantry's full posting lists, and left to pick the
+ * cheaper one itself.
+ */
+@Tag("benchmark")
+class PrepRangeBenchmarkTest {
+
+    private static final int RECIPES = 100_000;
+    private static final int K = 20;
+    private static final int[][] RANGES = { { 150, 180 }, { 120, 180 }, { 90, 180 }, { 60, 180 }, { 5, 20 } };
+
+    private final ForkJoinPool pool = new ForkJoinPool(1);
+
+    private RecipeIndexService index;
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void findTopMatchesPicksTheCheaperPath() {
+        SyntheticCatalog catalog = new SyntheticCatalog(11, 500);
+        List<Recipe> recipes = catalog.recipes(RECIPES, catalog::skewedPrepTime);
+        List<PantryIngredient> pantry = catalog.pantry(15);
+
+        RecipeRepository recipeRepository = mock(RecipeRepository.class);
+        when(recipeRepository.findAllWithIngredients()).thenReturn(recipes);
+        IngredientDictionary dictionary = new IngredientDictionary();
+        IngredientNameResolver resolver = new IngredientNameResolver(dictionary);
+        index = new RecipeIndexService(recipeRepository, dictionary, resolver,
+                new RecipeSimilarityIndex(resolver, 0.7), pool);
+        // Sequential, so every path is timed on one thread
+        ReflectionTestUtils.setField(index, "parallelThreshold", Integer.MAX_VALUE);
+        ReflectionTestUtils.setField(index, "partitionSize", 8192);
+        index.rebuild();
+
+        for (int[] range : RANGES) {
+            int min = range[0];
+            int max = range[1];
+            long inRange = recipes.stream().filter(r -> r.getPrepTime() >= min && r.getPrepTime() <= max).count();
+            String label = min + "-" + max + " min (" + inRange + " recipes), ";
+
+            List<Long> expected = ids(topMatches(min, max, pantry, RecipeIndexService.ScoringPath.POSTING_LISTS));
+            assertThat(ids(topMatches(min, max, pantry, RecipeIndexService.ScoringPath.SLICE))).isEqualTo(expected);
+            assertThat(ids(index.findTopMatches(min, max, pantry, K, null))).isEqualTo(expected);
+
+            double sliced = BenchmarkTimer.nanosPerOp(label + "slice", 300, 500,
+                    () -> topMatches(min, max, pantry, RecipeIndexService.ScoringPath.SLICE).size());
+            double walked = BenchmarkTimer.nanosPerOp(label + "posting lists", 300, 500,
+                    () -> topMatches(min, max, pantry, RecipeIndexService.ScoringPath.POSTING_LISTS).size());
+            double picked = BenchmarkTimer.nanosPerOp(label + "findTopMatches", 300, 500,
+                    () -> index.findTopMatches(min, max, pantry, K, null).size());
+
+            // Some slack for timer noise and the cost estimate itself
+            assertThat(picked).isLessThan(1.5 * Math.min(sliced, walked) + 20_000);
+        }
+    }
+
+    private List<RankedMatch> topMatches(int min, int max, List<PantryIngredient> pantry,
+            RecipeIndexService.ScoringPath path) {
+        return index.findTopMatches(min, max, pantry, K, null, path);
+    }
+
+    private static List<Long> ids(List<RankedMatch> matches) {
+        return matches.stream().map(RankedMatch::getRecipeId).toList();
+    }
+}
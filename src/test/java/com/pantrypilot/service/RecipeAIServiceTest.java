@@ -0,0 +1,82 @@
+package com.pantrypilot.service;
+
+import com.pantrypilot.model.Recipe;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RecipeAIServiceTest {
+
+    private static final String PASTA = """
+            {"title": "Pasta", "prepTime": 20, "instructions": "Boil.",
+             "ingredients": [{"ingredientName": "pasta", "quantity": 200, "unit": "g"}]}""";
+
+    private final AtomicLong ids = new AtomicLong(100);
+    private final List<Map<String, Object>> ingredients = List.of(
+            Map.of("ingredientName", "pasta", "quantity", 500, "unit", "g"),
+            Map.of("ingredientName", "tomato", "quantity", 4, "unit", ""),
+            Map.of("ingredientName", "garlic", "quantity", 2, "unit", ""));
+
+    private RecipeWriteBehindQueue writeBehindQueue;
+
+    @BeforeEach
+    void setUp() {
+        writeBehindQueue = mock(RecipeWriteBehindQueue.class);
+        when(writeBehindQueue.enqueue(any())).thenAnswer(inv -> {
+            Recipe recipe = inv.getArgument(0);
+            recipe.setId(ids.incrementAndGet());
+            return recipe;
+        });
+    }
+
+    @Test
+    void completedStreamReturnsItsRecipes() {
+        RecipeAIService service = service((prompt, ing, min, max, count, onChunk) -> onChunk.accept("[" + PASTA + "]"));
+
+        assertThat(service.generateRecipes(ingredients, 0, 60, Set.of(), 3))
+                .extracting(Recipe::getTitle).containsExactly("Pasta");
+    }
+
+    @Test
+    void failedStreamThrowsWithTheRecipesSavedBeforeIt() {
+        RecipeAIService service = service((prompt, ing, min, max, count, onChunk) -> {
+            onChunk.accept("[" + PASTA + ",");
+            throw new IllegalStateException("connection reset");
+        });
+        List<Recipe> streamed = new ArrayList<>();
+
+        AiGenerationException failure = catchThrowableOfType(() -> service.generateRecipes(ingredients, 0, 60,
+                Set.of(), 3, 0, streamed::add), AiGenerationException.class);
+
+        assertThat(failure.getRecipes()).extracting(Recipe::getTitle).containsExactly("Pasta");
+        assertThat(failure.getRecipes()).isEqualTo(streamed);
+        assertThat(failure).hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void bulkheadRejectionIsAFailureNotAnEmptyResult() {
+        RecipeAIService service = service((prompt, ing, min, max, count, onChunk) -> {
+            throw new RejectedExecutionException("AI bulkhead full");
+        });
+
+        AiGenerationException failure = catchThrowableOfType(
+                () -> service.generateRecipes(ingredients, 0, 60, Set.of(), 3), AiGenerationException.class);
+
+        assertThat(failure.getRecipes()).isEmpty();
+        assertThat(failure).hasCauseInstanceOf(RejectedExecutionException.class);
+    }
+
+    private RecipeAIService service(RecipeGenerator generator) {
+        return new RecipeAIService(writeBehindQueue, generator, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,349 @@
+package com.pantrypilot.service;
+
+import com.pantrypilot.model.PantryIngredient;
+import com.pantrypilot.model.Recipe;
+import com.pantrypilot.model.RecipeIngredient;
+import com.pantrypilot.repository.RecipeRepository;
+import com.pantrypilot.util.UnitConverter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RecipeIndexServiceTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final SyntheticCatalog catalog = new SyntheticCatalog(42, 80);
+
+    private RecipeRepository recipeRepository;
+    private RecipeIndexService index;
+    private List<Recipe> recipes;
+
+    @BeforeEach
+    void setUp() {
+        recipeRepository = mock(RecipeRepository.class);
+        IngredientDictionary dictionary = new IngredientDictionary();
+        IngredientNameResolver resolver = new IngredientNameResolver(dictionary);
+        index = new RecipeIndexService(recipeRepository, dictionary, resolver,
+                new RecipeSimilarityIndex(resolver, 0.7), pool);
+        sequential();
+
+        recipes = new ArrayList<>(catalog.recipes(600, catalog::uniformPrepTime));
+        when(recipeRepository.findAllWithIngredients()).thenReturn(recipes);
+        index.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void topMatchesAgreeWithBruteForce() {
+        List<PantryIngredient> pantry = catalog.pantry(50);
+
+        List<Long> expected = bruteForce(recipes, 20, 90, pantry);
+        assertThat(expected).isNotEmpty();
+        assertThat(ids(index.findTopMatches(20, 90, pantry, Integer.MAX_VALUE, null))).isEqualTo(expected);
+        assertThat(index.findMatchingRecipeIds(20, 90, pantry)).isEqualTo(expected);
+    }
+
+    @Test
+    void topKIsThePrefixOfTheFullRanking() {
+        List<PantryIngredient> pantry = catalog.pantry(50);
+
+        List<Long> expected = bruteForce(recipes, 0, 200, pantry);
+        assertThat(expected.size()).isGreaterThan(10);
+        assertThat(ids(index.findTopMatches(0, 200, pantry, 10, null))).isEqualTo(expected.subList(0, 10));
+    }
+
+    @Test
+    void cursorPagesCoverTheRankingExactlyOnce() {
+        List<PantryIngredient> pantry = catalog.pantry(50);
+
+        List<Long> paged = new ArrayList<>();
+        RankedMatch cursor = null;
+        while (true) {
+            List<RankedMatch> page = index.findTopMatches(0, 200, pantry, 7, cursor);
+            if (page.isEmpty())
+                break;
+            assertThat(page.size()).isLessThanOrEqualTo(7);
+            page.forEach(m -> paged.add(m.getRecipeId()));
+            cursor = page.get(page.size() - 1);
+        }
+        assertThat(paged).isEqualTo(bruteForce(recipes, 0, 200, pantry));
+    }
+
+    @Test
+    void partitionedScoringMatchesSequential() {
+        List<PantryIngredient> pantry = catalog.pantry(50);
+        List<Long> sequentialTop = ids(index.findTopMatches(10, 100, pantry, 25, null));
+        List<Long> sequentialComplete = index.findCompleteMatchIds(pantry);
+
+        // Odd partition size so partition edges fall mid-posting list
+        ReflectionTestUtils.setField(index, "parallelThreshold", 1);
+        ReflectionTestUtils.setField(index, "partitionSize", 37);
+
+        assertThat(ids(index.findTopMatches(10, 100, pantry, 25, null))).isEqualTo(sequentialTop);
+        assertThat(index.findCompleteMatchIds(pantry)).containsExactlyInAnyOrderElementsOf(sequentialComplete);
+    }
+
+    @Test
+    void reusedHitCountersStartFromZero() {
+        // Same thread, different ranges and pantries: nothing may carry over between queries
+        for (int round = 0; round < 5; round++) {
+            List<PantryIngredient> pantry = catalog.pantry(40 + round * 5);
+            int minPrepTime = round * 10;
+            assertThat(ids(index.findTopMatches(minPrepTime, 200, pantry, Integer.MAX_VALUE, null)))
+                    .isEqualTo(bruteForce(recipes, minPrepTime, 200, pantry));
+        }
+    }
+
+    @Test
+    void narrowPrepRangeScansTheSliceWithTheSameResult() {
+        // A near-complete pantry makes the posting lists far costlier than a one-minute slice
+        List<PantryIngredient> pantry = catalog.pantry(75);
+        int prepTime = recipes.get(0).getPrepTime();
+
+        assertThat(ids(index.findTopMatches(prepTime, prepTime, pantry, Integer.MAX_VALUE, null)))
+                .isEqualTo(bruteForce(recipes, prepTime, prepTime, pantry));
+    }
+
+    @Test
+    void smallPantryWalksPostingListsWithTheSameResult() {
+        // Two rare ingredients: their posting lists are far shorter than the whole range
+        for (Recipe recipe : List.of(recipe(10_001, 40, "spice78", "spice79"),
+                recipe(10_002, 50, "spice78", "spice79", "spice1"))) {
+            recipes.add(recipe);
+            index.addRecipe(recipe);
+        }
+        List<PantryIngredient> pantry = List.of(
+                SyntheticCatalog.pantryIngredient("spice78", 100, "kg"),
+                SyntheticCatalog.pantryIngredient("spice79", 100, "kg"));
+
+        assertThat(ids(index.findTopMatches(0, 200, pantry, Integer.MAX_VALUE, null)))
+                .isEqualTo(bruteForce(recipes, 0, 200, pantry))
+                .contains(10_001L)
+                .doesNotContain(10_002L);
+    }
+
+    @Test
+    void prepRangeBoundsAreInclusive() {
+        Recipe quick = recipe(10_001, 15, "spice1", "spice2");
+        Recipe slow = recipe(10_002, 16, "spice1", "spice2");
+        index.addRecipe(quick);
+        index.addRecipe(slow);
+        List<PantryIngredient> pantry = List.of(
+                SyntheticCatalog.pantryIngredient("spice1", 100, "kg"),
+                SyntheticCatalog.pantryIngredient("spice2", 100, "kg"));
+
+        assertThat(index.findMatchingRecipeIds(15, 15, pantry)).contains(10_001L).doesNotContain(10_002L);
+        assertThat(index.findMatchingRecipeIds(16, 16, pantry)).contains(10_002L).doesNotContain(10_001L);
+    }
+
+    @Test
+    void completeMatchesNeedEveryIngredientInQuantity() {
+        index.clear();
+        index.addRecipe(recipe(1, 10, "spice1", "spice2"));
+        index.addRecipe(recipe(2, 10, "spice1", "spice3"));
+        index.addRecipe(recipe(3, 10, "spice1"));
+
+        List<PantryIngredient> pantry = List.of(
+                SyntheticCatalog.pantryIngredient("spice1", 1, "kg"),
+                SyntheticCatalog.pantryIngredient("spice2", 1, "kg"));
+
+        // 1 kg of each covers the 500 g the recipes need
+        assertThat(index.findCompleteMatchIds(pantry)).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(index.findCompleteMatchIds(List.of(SyntheticCatalog.pantryIngredient("spice1", 100, "g"))))
+                .isEmpty();
+    }
+
+    @Test
+    void completeMatchesAgreeWithBruteForce() {
+        List<PantryIngredient> pantry = catalog.pantry(70);
+
+        List<Long> expected = new ArrayList<>();
+        for (Recipe recipe : recipes) {
+            if (hits(recipe, pantry) == recipe.getIngredients().size())
+                expected.add(recipe.getId());
+        }
+        assertThat(index.findCompleteMatchIds(pantry)).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    void removedRecipesDisappearAndCompactionKeepsResults() {
+        List<PantryIngredient> pantry = catalog.pantry(50);
+
+        // More than half the slots and past the initial capacity, so this compacts
+        List<Recipe> kept = new ArrayList<>();
+        for (Recipe recipe : recipes) {
+            if (recipe.getId() % 3 == 0) {
+                kept.add(recipe);
+            } else {
+                index.removeRecipe(recipe.getId());
+            }
+        }
+        assertThat(ids(index.findTopMatches(0, 200, pantry, Integer.MAX_VALUE, null)))
+                .isEqualTo(bruteForce(kept, 0, 200, pantry));
+
+        // Slots added after compaction are found too
+        Recipe added = catalog.recipe(5_000, 30);
+        index.addRecipe(added);
+        kept.add(added);
+        assertThat(ids(index.findTopMatches(0, 200, pantry, Integer.MAX_VALUE, null)))
+                .isEqualTo(bruteForce(kept, 0, 200, pantry));
+    }
+
+    @Test
+    void addingAnExistingIdReplacesIt() {
+        Recipe replacement = recipe(recipes.get(0).getId(), 10, "spice70", "spice71");
+        index.addRecipe(replacement);
+
+        List<PantryIngredient> pantry = List.of(
+                SyntheticCatalog.pantryIngredient("spice70", 100, "kg"),
+                SyntheticCatalog.pantryIngredient("spice71", 100, "kg"));
+        assertThat(index.findCompleteMatchIds(pantry)).contains(replacement.getId());
+        assertThat(index.findMatchingRecipeIds(0, 200, recipes.get(0).getIngredients().stream()
+                .map(ri -> SyntheticCatalog.pantryIngredient(ri.getIngredientName(), 100, "kg"))
+                .toList())).doesNotContain(replacement.getId());
+    }
+
+    @Test
+    void replacingRecipesCompactsTheirTombstones() {
+        List<PantryIngredient> pantry = catalog.pantry(50);
+
+        // Each replacement leaves a dead slot; enough of them must trigger compaction
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < recipes.size(); i++) {
+                Recipe replacement = catalog.recipe(recipes.get(i).getId(), catalog.uniformPrepTime());
+                recipes.set(i, replacement);
+                index.addRecipe(replacement);
+            }
+        }
+        assertThat(index.slotCount()).isLessThan(2 * recipes.size());
+        assertThat(ids(index.findTopMatches(0, 200, pantry, Integer.MAX_VALUE, null)))
+                .isEqualTo(bruteForce(recipes, 0, 200, pantry));
+    }
+
+    @Test
+    void patchedHitCountersMatchFreshOnes() {
+        List<PantryIngredient> pantry = new ArrayList<>(catalog.pantry(50));
+        PantryMatchState state = index.countHits(0, 200, pantry);
+
+        PantryIngredient removed = pantry.remove(0);
+        index.applyPantryChange(state, 0, 200, removed, null);
+        PantryIngredient before = pantry.get(0);
+        PantryIngredient after = SyntheticCatalog.pantryIngredient(before.getIngredientName(), 1, "mg");
+        pantry.set(0, after);
+        index.applyPantryChange(state, 0, 200, before, after);
+
+        PantryMatchState fresh = index.countHits(0, 200, pantry);
+        assertThat(state.hitsByRecipe).isEqualTo(fresh.hitsByRecipe);
+        assertThat(ids(index.findTopMatches(state, 20, null)))
+                .isEqualTo(ids(index.findTopMatches(0, 200, pantry, 20, null)));
+    }
+
+    @Test
+    void refreshedCountersFollowCatalogChanges() {
+        List<PantryIngredient> pantry = new ArrayList<>(catalog.pantry(50));
+        // Not in the catalog yet, so unknown to the index when the counters are built
+        pantry.add(SyntheticCatalog.pantryIngredient("saffron", 100, "kg"));
+        pantry.add(SyntheticCatalog.pantryIngredient("vanilla", 100, "kg"));
+        PantryMatchState state = index.countHits(0, 200, pantry);
+
+        // An added recipe the pantry covers, a replaced one and a removed one
+        Recipe added = recipe(10_001, 30, "saffron", "vanilla");
+        recipes.add(added);
+        index.addRecipe(added);
+        Recipe replaced = recipe(recipes.get(0).getId(), 200, "spice70", "spice71");
+        recipes.set(0, replaced);
+        index.addRecipe(replaced);
+        index.removeRecipe(recipes.remove(1).getId());
+
+        index.refresh(state, pantry);
+        assertThat(state.getIndexVersion()).isEqualTo(index.getVersion());
+        assertThat(state.hitsByRecipe).isEqualTo(index.countHits(0, 200, pantry).hitsByRecipe);
+        assertThat(ids(index.findTopMatches(state, Integer.MAX_VALUE, null)))
+                .isEqualTo(bruteForce(recipes, 0, 200, pantry))
+                .contains(10_001L);
+    }
+
+    @Test
+    void countersOlderThanARebuildAreRecounted() {
+        List<PantryIngredient> pantry = catalog.pantry(50);
+        PantryMatchState state = index.countHits(0, 200, pantry);
+
+        recipes.remove(0);
+        index.rebuild();
+        index.refresh(state, pantry);
+
+        assertThat(state.hitsByRecipe).isEqualTo(index.countHits(0, 200, pantry).hitsByRecipe);
+        assertThat(ids(index.findTopMatches(state, 20, null))).isEqualTo(bruteForce(recipes, 0, 200, pantry).subList(0, 20));
+    }
+
+    @Test
+    void catalogChangesBumpTheVersion() {
+        long version = index.getVersion();
+        index.addRecipe(catalog.recipe(9_000, 20));
+        assertThat(index.getVersion()).isGreaterThan(version);
+    }
+
+    private void sequential() {
+        ReflectionTestUtils.setField(index, "parallelThreshold", Integer.MAX_VALUE);
+        ReflectionTestUtils.setField(index, "partitionSize", 8192);
+    }
+
+    private static Recipe recipe(long id, int prepTime, String... names) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setTitle("Recipe " + id);
+        recipe.setPrepTime(prepTime);
+        List<RecipeIngredient> ingredients = new ArrayList<>();
+        for (String name : names) {
+            ingredients.add(SyntheticCatalog.ingredient(recipe, name, 500, "g"));
+        }
+        recipe.setIngredients(ingredients);
+        return recipe;
+    }
+
+    private static List<Long> ids(List<RankedMatch> matches) {
+        return matches.stream().map(RankedMatch::getRecipeId).toList();
+    }
+
+    /** The ranking by definition: every recipe in range checked against every pantry entry. */
+    private static List<Long> bruteForce(List<Recipe> recipes, int minPrepTime, int maxPrepTime,
+            List<PantryIngredient> pantry) {
+        List<RankedMatch> matches = new ArrayList<>();
+        for (Recipe recipe : recipes) {
+            if (recipe.getPrepTime() < minPrepTime || recipe.getPrepTime() > maxPrepTime)
+                continue;
+            int total = recipe.getIngredients().size();
+            int hits = hits(recipe, pantry);
+            if ((double) hits / total >= 0.75)
+                matches.add(new RankedMatch(recipe.getId(), (double) hits / total, total - hits, recipe.getPrepTime()));
+        }
+        matches.sort(RankedMatch.BEST_FIRST);
+        return ids(matches);
+    }
+
+    private static int hits(Recipe recipe, List<PantryIngredient> pantry) {
+        int hits = 0;
+        for (RecipeIngredient ri : recipe.getIngredients()) {
+            for (PantryIngredient pi : pantry) {
+                if (pi.getIngredientName().equals(ri.getIngredientName())) {
+                    if (UnitConverter.isEnough(pi, ri))
+                        hits++;
+                    break;
+                }
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,65 @@
+package com.pantrypilot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class RecipeMatcherServiceTest {
+
+    @Test
+    void overFetchAsksForExactlyWhatIsNeededWithoutRejections() {
+        assertThat(RecipeMatcherService.overFetchCount(4, 0.0, 10)).isEqualTo(4);
+    }
+
+    @Test
+    void overFetchAddsExpectedLossesAndAMargin() {
+        // Half rejected: 8 expected, plus two standard deviations of 2
+        assertThat(RecipeMatcherService.overFetchCount(4, 0.5, 20)).isEqualTo(12);
+        assertThat(RecipeMatcherService.overFetchCount(4, 0.25, 20)).isGreaterThan(4).isLessThan(12);
+    }
+
+    @Test
+    void overFetchIsCappedPerCall() {
+        assertThat(RecipeMatcherService.overFetchCount(4, 0.5, 10)).isEqualTo(10);
+        // Everything rejected still assumes a 20% acceptance instead of asking for infinitely many
+        assertThat(RecipeMatcherService.overFetchCount(4, 1.0, 100)).isEqualTo(28);
+    }
+
+    @Test
+    void overFetchNeverAsksForFewerThanNeeded() {
+        assertThat(RecipeMatcherService.overFetchCount(15, 0.5, 10)).isEqualTo(15);
+    }
+
+    @Test
+    void answeredAttemptsRecordTheirLatency() throws Exception {
+        AiAttemptStats stats = mock(AiAttemptStats.class);
+
+        assertThat(RecipeMatcherService.timedAttempt(stats, () -> List.of("recipe"))).containsExactly("recipe");
+        verify(stats).recordLatency(anyLong());
+    }
+
+    @Test
+    void failedAndInterruptedAttemptsRecordNoLatency() throws Exception {
+        AiAttemptStats stats = mock(AiAttemptStats.class);
+
+        assertThatThrownBy(() -> RecipeMatcherService.timedAttempt(stats, () -> {
+            throw new AiGenerationException(List.of(), new RejectedExecutionException("AI bulkhead full"));
+        })).isInstanceOf(AiGenerationException.class);
+        try {
+            RecipeMatcherService.timedAttempt(stats, () -> {
+                Thread.currentThread().interrupt();
+                return List.of();
+            });
+        } finally {
+            // Clear the flag so it doesn't leak into other tests
+            Thread.interrupted();
+        }
+        verify(stats, never()).recordLatency(anyLong());
+    }
+}
@@ -0,0 +1,100 @@
+package com.pantrypilot.service;
+
+import com.pantrypilot.model.Recipe;
+import com.pantrypilot.model.RecipeIngredient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecipeSimilarityIndexTest {
+
+    private IngredientNameResolver resolver;
+    private RecipeSimilarityIndex index;
+
+    @BeforeEach
+    void setUp() {
+        resolver = new IngredientNameResolver(new IngredientDictionary());
+        for (String name : List.of("tomato", "rice", "onion", "garlic", "chicken", "soy sauce", "egg", "flour")) {
+            resolver.intern(name);
+        }
+        index = new RecipeSimilarityIndex(resolver, 0.7);
+        index.add(recipe(1, "Tomato Rice", "tomato", "rice", "onion", "garlic"));
+        index.add(recipe(2, "Chicken Stir Fry", "chicken", "soy sauce", "garlic", "onion"));
+    }
+
+    @Test
+    void findsARenamedRecipeWithTheSameIngredients() {
+        Recipe pilaf = recipe(3, "Easy Tomato Rice Pilaf", "tomatoes", "rice", "onions", "garlic");
+
+        List<RecipeSimilarityIndex.NearDuplicate> found = index.findNearDuplicates(pilaf);
+        assertThat(found).extracting(RecipeSimilarityIndex.NearDuplicate::id).containsExactly(1L);
+        assertThat(found.get(0).title()).isEqualTo("Tomato Rice");
+        assertThat(found.get(0).similarity()).isGreaterThanOrEqualTo(0.7);
+    }
+
+    @Test
+    void differentRecipesAreNotDuplicates() {
+        assertThat(index.findNearDuplicates(recipe(3, "Pancakes", "egg", "flour"))).isEmpty();
+        // Same title words, different dish
+        assertThat(index.findNearDuplicates(recipe(4, "Tomato Rice", "chicken", "soy sauce", "egg", "flour")))
+                .extracting(RecipeSimilarityIndex.NearDuplicate::id)
+                .doesNotContain(1L);
+    }
+
+    @Test
+    void neverReturnsTheRecipeItself() {
+        assertThat(index.findNearDuplicates(recipe(1, "Tomato Rice", "tomato", "rice", "onion", "garlic"))).isEmpty();
+    }
+
+    @Test
+    void duplicatesAnyOfOnlyLooksAtTheGivenTitles() {
+        Recipe pilaf = recipe(3, "Tomato Rice Pilaf", "tomato", "rice", "onion", "garlic");
+
+        assertThat(index.duplicatesAnyOf(pilaf, Set.of("tomato rice"))).isTrue();
+        assertThat(index.duplicatesAnyOf(pilaf, Set.of("chicken stir fry"))).isFalse();
+        assertThat(index.duplicatesAnyOf(pilaf, Set.of())).isFalse();
+    }
+
+    @Test
+    void looksUpIdsByTitleIgnoringCase() {
+        assertThat(index.idOfTitle("tomato RICE")).isEqualTo(1L);
+        assertThat(index.idOfTitle("Fried Rice")).isNull();
+        assertThat(index.idOfTitle(null)).isNull();
+    }
+
+    @Test
+    void removeAndReplaceUpdateLookups() {
+        Recipe pilaf = recipe(3, "Tomato Rice Pilaf", "tomato", "rice", "onion", "garlic");
+
+        index.remove(1L);
+        assertThat(index.findNearDuplicates(pilaf)).isEmpty();
+        assertThat(index.idOfTitle("Tomato Rice")).isNull();
+
+        // Same ID under a new title and ingredients replaces the old entry
+        index.add(recipe(2, "Tomato Rice", "tomato", "rice", "onion", "garlic"));
+        assertThat(index.idOfTitle("Chicken Stir Fry")).isNull();
+        assertThat(index.findNearDuplicates(pilaf)).extracting(RecipeSimilarityIndex.NearDuplicate::id)
+                .containsExactly(2L);
+
+        index.clear();
+        assertThat(index.findNearDuplicates(pilaf)).isEmpty();
+        assertThat(index.idOfTitle("Tomato Rice")).isNull();
+    }
+
+    private static Recipe recipe(long id, String title, String... ingredientNames) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setTitle(title);
+        List<RecipeIngredient> ingredients = new ArrayList<>();
+        for (String name : ingredientNames) {
+            ingredients.add(SyntheticCatalog.ingredient(recipe, name, 1, ""));
+        }
+        recipe.setIngredients(ingredients);
+        return recipe;
+    }
+}
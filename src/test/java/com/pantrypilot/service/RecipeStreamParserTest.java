@@ -0,0 +1,100 @@
+package com.pantrypilot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pantrypilot.model.Recipe;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecipeStreamParserTest {
+
+    private static final String PASTA = """
+            {"title": "Pasta", "prepTime": 20, "instructions": "Boil.",
+             "ingredients": [{"ingredientName": "pasta", "quantity": 200, "unit": "g"},
+                             {"ingredientName": "salt", "quantity": 1, "unit": "tsp"}]}""";
+    private static final String SOUP = """
+            {"title": "Soup", "prepTime": 30, "instructions": "Simmer.",
+             "ingredients": [{"ingredientName": "tomato", "quantity": 3, "unit": ""}]}""";
+
+    private final List<Recipe> emitted = new ArrayList<>();
+    private RecipeStreamParser parser;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        parser = new RecipeStreamParser(new ObjectMapper(), emitted::add);
+    }
+
+    @Test
+    void emitsEachRecipeAsItsObjectCloses() {
+        String json = "[" + PASTA + "," + SOUP + "]";
+        int secondStart = json.indexOf("{\"title\": \"Soup\"");
+
+        parser.feed(json.substring(0, secondStart + 10));
+        assertThat(titles()).containsExactly("Pasta");
+        assertThat(emitted.get(0).getIngredients()).hasSize(2);
+
+        parser.feed(json.substring(secondStart + 10));
+        assertThat(titles()).containsExactly("Pasta", "Soup");
+    }
+
+    @Test
+    void objectsSplitAcrossChunksAtEveryCharacter() {
+        String json = "[" + PASTA + "," + SOUP + "]";
+        for (char c : json.toCharArray()) {
+            parser.feed(String.valueOf(c));
+        }
+        assertThat(titles()).containsExactly("Pasta", "Soup");
+        assertThat(emitted.get(1).getPrepTime()).isEqualTo(30);
+        assertThat(emitted.get(1).getIngredients().get(0).getIngredientName()).isEqualTo("tomato");
+    }
+
+    @Test
+    void bracesAndQuotesInsideStringsDoNotCloseTheObject() {
+        String tricky = """
+                {"title": "Curly {Fries}", "prepTime": 15,
+                 "instructions": "Toss } in a \\"bowl\\" ] then {bake}.",
+                 "ingredients": [{"ingredientName": "potato", "quantity": 2, "unit": ""}]}""";
+
+        // Split right after the escaped quote and the stray closing brace
+        int cut = tricky.indexOf("} in") + 1;
+        parser.feed("[" + tricky.substring(0, cut));
+        assertThat(emitted).isEmpty();
+        parser.feed(tricky.substring(cut) + "]");
+
+        assertThat(titles()).containsExactly("Curly {Fries}");
+        assertThat(emitted.get(0).getInstructions()).isEqualTo("Toss } in a \"bowl\" ] then {bake}.");
+    }
+
+    @Test
+    void ignoresMarkdownFenceAndTextAfterTheArray() {
+        parser.feed("Here you go:\n```json\n[");
+        parser.feed(PASTA);
+        parser.feed("]\n```\n[" + SOUP + "]");
+
+        assertThat(titles()).containsExactly("Pasta");
+    }
+
+    @Test
+    void skipsRecipesThatDoNotBindAndKeepsTheRest() {
+        String broken = "{\"title\": \"Bad\", \"prepTime\": \"soon\", \"ingredients\": []}";
+        parser.feed("[" + PASTA + "," + broken + "," + SOUP + "]");
+
+        assertThat(titles()).containsExactly("Pasta", "Soup");
+    }
+
+    @Test
+    void malformedJsonStopsParsingButKeepsEmittedRecipes() {
+        parser.feed("[" + PASTA + ", {\"title\": }");
+        parser.feed(SOUP + "]");
+
+        assertThat(titles()).containsExactly("Pasta");
+    }
+
+    private List<String> titles() {
+        return emitted.stream().map(Recipe::getTitle).toList();
+    }
+}
@@ -0,0 +1,151 @@
+package com.pantrypilot.service;
+
+import com.pantrypilot.dto.RecipeDTO;
+import com.pantrypilot.model.Recipe;
+import com.pantrypilot.model.RecipeIngredient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class RecipeWriteBehindQueueTest {
+
+    private final AtomicLong ids = new AtomicLong(100);
+    private final List<Recipe> saved = new ArrayList<>();
+
+    private RecipeService recipeService;
+    private RecipeSimilarityIndex similarityIndex;
+    private RecipeWriteBehindQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        recipeService = mock(RecipeService.class);
+        when(recipeService.reserveRecipeId()).thenAnswer(inv -> ids.incrementAndGet());
+        when(recipeService.saveAIRecipes(anyList())).thenAnswer(inv -> {
+            List<Recipe> batch = inv.getArgument(0);
+            saved.addAll(batch);
+            return batch;
+        });
+
+        IngredientNameResolver resolver = new IngredientNameResolver(new IngredientDictionary());
+        for (String name : List.of("tomato", "rice", "onion", "garlic", "egg", "flour")) {
+            resolver.intern(name);
+        }
+        similarityIndex = new RecipeSimilarityIndex(resolver, 0.7);
+        queue = new RecipeWriteBehindQueue(recipeService, mock(RecipeCacheService.class),
+                mock(MatchResultCache.class), similarityIndex, 500, 200, 50, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void queuesNewRecipesUnderReservedIdsAndWritesThemOnFlush() {
+        Recipe rice = queue.enqueue(recipe("Tomato Rice", "tomato", "rice", "onion", "garlic"));
+        Recipe pancakes = queue.enqueue(recipe("Pancakes", "egg", "flour"));
+
+        assertThat(rice.getId()).isEqualTo(101L);
+        assertThat(pancakes.getId()).isEqualTo(102L);
+        assertThat(queue.getPending(101L)).isSameAs(rice);
+
+        queue.flushAll();
+        assertThat(saved).containsExactly(rice, pancakes);
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test
+    void nearDuplicateOfAQueuedRecipeIsNeverSaved() {
+        Recipe rice = queue.enqueue(recipe("Tomato Rice", "tomato", "rice", "onion", "garlic"));
+        Recipe pilaf = recipe("Tomato Rice Pilaf", "tomatoes", "rice", "onions", "garlic");
+
+        assertThat(queue.enqueue(pilaf)).isSameAs(rice);
+        assertThat(queue.enqueue(recipe("tomato rice", "tomato", "rice"))).isSameAs(rice);
+
+        queue.flushAll();
+        assertThat(saved).containsExactly(rice);
+        assertThat(similarityIndex.idOfTitle("Tomato Rice Pilaf")).isNull();
+    }
+
+    @Test
+    void nearDuplicateOfACatalogRecipeIsServedAsThatRecipe() {
+        Recipe catalog = recipe("Tomato Rice", "tomato", "rice", "onion", "garlic");
+        catalog.setId(7L);
+        similarityIndex.add(catalog);
+        when(recipeService.getRecipeById(7L)).thenReturn(catalog);
+
+        assertThat(queue.enqueue(recipe("Easy Tomato Rice Pilaf", "tomato", "rice", "onion", "garlic")))
+                .isSameAs(catalog);
+
+        queue.flushAll();
+        assertThat(saved).isEmpty();
+        verify(recipeService, never()).reserveRecipeId();
+    }
+
+    @Test
+    void fullQueueWritesSynchronously() {
+        queue = new RecipeWriteBehindQueue(recipeService, mock(RecipeCacheService.class),
+                mock(MatchResultCache.class), similarityIndex, 1, 200, 50, new SimpleMeterRegistry());
+        queue.enqueue(recipe("Tomato Rice", "tomato", "rice", "onion", "garlic"));
+        Recipe pancakes = queue.enqueue(recipe("Pancakes", "egg", "flour"));
+
+        assertThat(saved).containsExactly(pancakes);
+        assertThat(queue.size()).isEqualTo(1);
+    }
+
+    @Test
+    void awaitingAQueuedRecipeWaitsForTheScheduledFlushWithoutRunningIt() throws Exception {
+        Recipe rice = queue.enqueue(recipe("Tomato Rice", "tomato", "rice", "onion", "garlic"));
+
+        assertThat(queue.awaitWritten(rice.getId())).isFalse();
+        assertThat(saved).isEmpty();
+
+        // As the scheduler would
+        Thread flusher = new Thread(queue::flush);
+        flusher.start();
+        assertThat(queue.awaitWritten(rice.getId())).isTrue();
+        assertThat(saved).containsExactly(rice);
+        assertThat(queue.awaitWritten(rice.getId())).isTrue();
+        flusher.join();
+    }
+
+    @Test
+    void replacedRecipesAreSwappedInTheSessionsHoldingThem() {
+        RecipeCacheService sessions = new RecipeCacheService(new SimpleMeterRegistry());
+        MatchResultCache matches = new MatchResultCache(10, new SimpleMeterRegistry());
+        queue = new RecipeWriteBehindQueue(recipeService, sessions, matches, similarityIndex, 500, 200, 50,
+                new SimpleMeterRegistry());
+        Recipe rice = queue.enqueue(recipe("Tomato Rice", "tomato", "rice", "onion", "garlic"));
+        RecipeDTO queued = new RecipeDTO(rice, List.of());
+        String token = sessions.addMatchedRecipes(List.of(queued), List.of(), 0, 60, Set.of("tomato rice"));
+        String other = sessions.addMatchedRecipes(List.of(), List.of(), 0, 60, Set.of());
+        matches.put("pantry", List.of(queued), Set.of("tomato rice"), null, true);
+
+        // The title was taken by another writer before the flush
+        Recipe stored = recipe("Tomato Rice", "tomato", "rice");
+        stored.setId(7L);
+        when(recipeService.saveAIRecipes(anyList())).thenReturn(List.of(stored));
+        queue.flushAll();
+
+        assertThat(sessions.getNextRecipes(token, 5)).extracting(RecipeDTO::getId).containsExactly(7L);
+        assertThat(matches.get("pantry").getRecipes()).extracting(RecipeDTO::getId).containsExactly(7L);
+        assertThat(sessions.getNextRecipes(other, 5)).isEmpty();
+        // Copies already handed out aren't mutated under their holders
+        assertThat(queued.getId()).isEqualTo(rice.getId());
+    }
+
+    private static Recipe recipe(String title, String... ingredientNames) {
+        Recipe recipe = new Recipe();
+        recipe.setTitle(title);
+        List<RecipeIngredient> ingredients = new ArrayList<>();
+        for (String name : ingredientNames) {
+            ingredients.add(SyntheticCatalog.ingredient(recipe, name, 1, ""));
+        }
+        recipe.setIngredients(ingredients);
+        return recipe;
+    }
+}
@@ -0,0 +1,111 @@
+package com.pantrypilot.service;
+
+import com.pantrypilot.model.PantryIngredient;
+import com.pantrypilot.model.Recipe;
+import com.pantrypilot.model.RecipeIngredient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * Random recipes and pantries over a fixed vocabulary ("spice0", "spice1", ...)
+ * for index tests and benchmarks. Names are their own ingredient keys, so they
+ * resolve exactly; amounts use a few units across mass, volume and count.
+ */
+final class SyntheticCatalog {
+
+    private static final String[] UNITS = { "g", "kg", "ml", "cup", "tbsp", "pcs", "" };
+
+    private final Random random;
+    private final int vocabulary;
+
+    SyntheticCatalog(long seed, int vocabulary) {
+        this.random = new Random(seed);
+        this.vocabulary = vocabulary;
+    }
+
+    static String name(int ingredient) {
+        return "spice" + ingredient;
+    }
+
+    /** Recipes with IDs 1..count, 3-10 ingredients each drawn with a skew toward low IDs. */
+    List<Recipe> recipes(int count, IntSupplier prepTimes) {
+        List<Recipe> recipes = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            recipes.add(recipe(i, prepTimes.getAsInt()));
+        }
+        return recipes;
+    }
+
+    Recipe recipe(long id, int prepTime) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setTitle("Recipe " + id);
+        recipe.setPrepTime(prepTime);
+
+        int size = 3 + random.nextInt(8);
+        List<Integer> used = new ArrayList<>();
+        List<RecipeIngredient> ingredients = new ArrayList<>();
+        while (ingredients.size() < size) {
+            int ingredient = skewed();
+            if (used.contains(ingredient))
+                continue;
+            used.add(ingredient);
+            ingredients.add(ingredient(recipe, name(ingredient), 1 + random.nextInt(5), unit()));
+        }
+        recipe.setIngredients(ingredients);
+        return recipe;
+    }
+
+    /** A pantry of {@code size} distinct ingredients with generous amounts. */
+    List<PantryIngredient> pantry(int size) {
+        List<Integer> used = new ArrayList<>();
+        List<PantryIngredient> pantry = new ArrayList<>();
+        while (pantry.size() < size) {
+            int ingredient = skewed();
+            if (used.contains(ingredient))
+                continue;
+            used.add(ingredient);
+            pantry.add(pantryIngredient(name(ingredient), 1 + random.nextInt(8), unit()));
+        }
+        return pantry;
+    }
+
+    int uniformPrepTime() {
+        return 5 + random.nextInt(120);
+    }
+
+    /** Most recipes are quick; a long tail up to three hours. */
+    int skewedPrepTime() {
+        return 5 + (int) Math.min(175, -20 * Math.log(1 - random.nextDouble()));
+    }
+
+    static RecipeIngredient ingredient(Recipe recipe, String name, double quantity, String unit) {
+        RecipeIngredient ri = new RecipeIngredient();
+        ri.setIngredientName(name);
+        ri.setUnit(unit);
+        ri.setQuantity(quantity);
+        ri.setRecipe(recipe);
+        return ri;
+    }
+
+    static PantryIngredient pantryIngredient(String name, double quantity, String unit) {
+        PantryIngredient pi = new PantryIngredient();
+        pi.setIngredientName(name);
+        pi.setUnit(unit);
+        pi.setQuantity(quantity);
+        return pi;
+    }
+
+    private String unit() {
+        return UNITS[random.nextInt(UNITS.length)];
+    }
+
+    // Squared uniform: common ingredients show up in many recipes, like salt and onion
+    private int skewed() {
+        double u = random.nextDouble();
+        return (int) (u * u * vocabulary);
+    }
+}
@@ -0,0 +1,121 @@
+package com.pantrypilot.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallersShareOneCall() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        Future<SingleFlight.Result<String>> leader = executor.submit(() -> singleFlight.run("k", () -> {
+            calls.incrementAndGet();
+            await(release);
+            return "value";
+        }));
+        waitUntilInFlight(calls);
+
+        List<Future<SingleFlight.Result<String>>> followers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            followers.add(executor.submit(() -> singleFlight.run("k", () -> {
+                calls.incrementAndGet();
+                return "other";
+            })));
+        }
+        // Followers are blocked on the leader, not running their own call
+        Thread.sleep(50);
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS).getValue()).isEqualTo("value");
+        assertThat(leader.get().isShared()).isFalse();
+        for (Future<SingleFlight.Result<String>> follower : followers) {
+            SingleFlight.Result<String> result = follower.get(5, TimeUnit.SECONDS);
+            assertThat(result.getValue()).isEqualTo("value");
+            assertThat(result.isShared()).isTrue();
+        }
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void failureReachesEveryWaitingCaller() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        Future<SingleFlight.Result<String>> leader = executor.submit(() -> singleFlight.run("k", () -> {
+            calls.incrementAndGet();
+            await(release);
+            throw new IllegalStateException("boom");
+        }));
+        waitUntilInFlight(calls);
+        Future<SingleFlight.Result<String>> follower = executor.submit(() -> singleFlight.run("k", () -> "other"));
+        Thread.sleep(50);
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class)
+                .hasRootCauseMessage("boom");
+    }
+
+    @Test
+    void nothingIsCachedOnceTheCallCompletes() {
+        assertThat(singleFlight.run("k", () -> "first").getValue()).isEqualTo("first");
+        assertThat(singleFlight.run("k", () -> "second").getValue()).isEqualTo("second");
+        assertThatThrownBy(() -> singleFlight.run("k", () -> {
+            throw new IllegalArgumentException();
+        })).isInstanceOf(IllegalArgumentException.class);
+        assertThat(singleFlight.run("k", () -> "third").isShared()).isFalse();
+    }
+
+    @Test
+    void differentKeysRunIndependently() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        Future<SingleFlight.Result<String>> blocked = executor.submit(() -> singleFlight.run("a", () -> {
+            calls.incrementAndGet();
+            await(release);
+            return "a";
+        }));
+        waitUntilInFlight(calls);
+
+        SingleFlight.Result<String> other = singleFlight.run("b", () -> "b");
+        assertThat(other.getValue()).isEqualTo("b");
+        assertThat(other.isShared()).isFalse();
+
+        release.countDown();
+        assertThat(blocked.get(5, TimeUnit.SECONDS).getValue()).isEqualTo("a");
+    }
+
+    private static void waitUntilInFlight(AtomicInteger calls) throws InterruptedException {
+        while (calls.get() == 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.pantrypilot.util;
+
+import com.pantrypilot.BenchmarkTimer;
+import com.pantrypilot.model.PantryIngredient;
+import com.pantrypilot.model.RecipeIngredient;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Quantity checks: string-keyed conversion per comparison vs units parsed once. */
+@Tag("benchmark")
+class UnitConverterBenchmarkTest {
+
+    private static final String[] UNITS = { "g", "KG", "mg", "ml", "L", "tbsp", "cup", "pcs", "oz", "" };
+    private static final int PAIRS = 10_000;
+
+    @Test
+    void parsedUnitsBeatPerComparisonConversion() {
+        Random random = new Random(7);
+        PantryIngredient[] available = new PantryIngredient[PAIRS];
+        RecipeIngredient[] required = new RecipeIngredient[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            available[i] = new PantryIngredient();
+            available[i].setUnit(UNITS[random.nextInt(UNITS.length)]);
+            available[i].setQuantity(1 + random.nextInt(1000));
+            required[i] = new RecipeIngredient();
+            required[i].setUnit(UNITS[random.nextInt(UNITS.length)]);
+            required[i].setQuantity(1 + random.nextInt(1000));
+        }
+
+        double legacy = BenchmarkTimer.nanosPerOp("legacy convert, " + PAIRS + " checks", 200, 500, () -> {
+            long enough = 0;
+            for (int i = 0; i < PAIRS; i++) {
+                double converted = LegacyConverter.convert(available[i].getQuantity(), available[i].getUnit(),
+                        required[i].getUnit());
+                if (converted >= required[i].getQuantity())
+                    enough++;
+            }
+            return enough;
+        });
+        double parsed = BenchmarkTimer.nanosPerOp("UnitConverter.isEnough, " + PAIRS + " checks", 200, 500, () -> {
+            long enough = 0;
+            for (int i = 0; i < PAIRS; i++) {
+                if (UnitConverter.isEnough(available[i], required[i]))
+                    enough++;
+            }
+            return enough;
+        });
+
+        assertThat(parsed).isLessThan(legacy);
+    }
+
+    /** The converter as it was before units were parsed on the ingredients. */
+    private static final class LegacyConverter {
+
+        private static final Map<String, Double> weightUnits = new HashMap<>();
+        private static final Map<String, Double> volumeUnits = new HashMap<>();
+
+        static {
+            weightUnits.put("mg", 0.001);
+            weightUnits.put("g", 1.0);
+            weightUnits.put("kg", 1000.0);
+
+            volumeUnits.put("ml", 1.0);
+            volumeUnits.put("l", 1000.0);
+            volumeUnits.put("tbsp", 15.0);
+        }
+
+        static double convert(double quantity, String fromUnit, String toUnit) {
+            if (fromUnit == null || toUnit == null) return quantity;
+
+            fromUnit = fromUnit.toLowerCase();
+            toUnit = toUnit.toLowerCase();
+
+            if (weightUnits.containsKey(fromUnit) && weightUnits.containsKey(toUnit)) {
+                return quantity * weightUnits.get(fromUnit) / weightUnits.get(toUnit);
+            } else if (volumeUnits.containsKey(fromUnit) && volumeUnits.containsKey(toUnit)) {
+                return quantity * volumeUnits.get(fromUnit) / volumeUnits.get(toUnit);
+            }
+
+            return quantity;
+        }
+    }
+}
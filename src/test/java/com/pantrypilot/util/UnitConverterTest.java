@@ -0,0 +1,77 @@
+package com.pantrypilot.util;
+
+import com.pantrypilot.model.PantryIngredient;
+import com.pantrypilot.model.RecipeIngredient;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class UnitConverterTest {
+
+    @Test
+    void parsesAliasesIgnoringCaseAndSpace() {
+        assertThat(Unit.parse("KG")).isEqualTo(Unit.KILOGRAM);
+        assertThat(Unit.parse(" tbsp ")).isEqualTo(Unit.TABLESPOON);
+        assertThat(Unit.parse("Cups")).isEqualTo(Unit.CUP);
+        assertThat(Unit.parse("oz")).isEqualTo(Unit.OUNCE);
+        assertThat(Unit.parse("pcs")).isEqualTo(Unit.PIECE);
+    }
+
+    @Test
+    void missingUnitIsACountAndUnknownKeepsItsOwnDimension() {
+        assertThat(Unit.parse(null)).isEqualTo(Unit.PIECE);
+        assertThat(Unit.parse("")).isEqualTo(Unit.PIECE);
+        assertThat(Unit.parse("pinch")).isEqualTo(Unit.UNKNOWN);
+        assertThat(Unit.parse("pinch").getDimension()).isEqualTo(Unit.Dimension.UNKNOWN);
+    }
+
+    @Test
+    void convertsThroughTheBaseUnit() {
+        assertThat(Unit.KILOGRAM.toBase(1.5)).isEqualTo(1500.0);
+        assertThat(Unit.TABLESPOON.toBase(2)).isEqualTo(30.0);
+        assertThat(Unit.CUP.fromBase(Unit.LITRE.toBase(0.48))).isCloseTo(2.0, within(1e-9));
+        assertThat(Unit.DOZEN.toBase(1)).isEqualTo(12.0);
+    }
+
+    @Test
+    void sameDimensionComparesBaseQuantities() {
+        assertThat(UnitConverter.isEnough(pantry(1, "kg"), recipe(800, "g"))).isTrue();
+        assertThat(UnitConverter.isEnough(pantry(500, "g"), recipe(1, "kg"))).isFalse();
+        assertThat(UnitConverter.isEnough(pantry(1, "cup"), recipe(15, "tbsp"))).isTrue();
+        assertThat(UnitConverter.isEnough(pantry(1, "dozen"), recipe(13, ""))).isFalse();
+    }
+
+    @Test
+    void differentDimensionsCompareRawNumbers() {
+        assertThat(UnitConverter.isEnough(pantry(3, "pcs"), recipe(200, "g"))).isFalse();
+        assertThat(UnitConverter.isEnough(pantry(300, "g"), recipe(2, "cup"))).isTrue();
+        assertThat(UnitConverter.isEnough(pantry(2, "pinch"), recipe(2, "pinch"))).isTrue();
+    }
+
+    @Test
+    void baseQuantityFollowsLaterUnitChanges() {
+        PantryIngredient pi = new PantryIngredient();
+        pi.setQuantity(2);
+        pi.setUnit("kg");
+        assertThat(pi.getBaseQuantity()).isEqualTo(2000.0);
+
+        pi.setUnit("g");
+        assertThat(pi.getBaseQuantity()).isEqualTo(2.0);
+        assertThat(pi.getParsedUnit().getDimension()).isEqualTo(Unit.Dimension.MASS);
+    }
+
+    private static PantryIngredient pantry(double quantity, String unit) {
+        PantryIngredient pi = new PantryIngredient();
+        pi.setUnit(unit);
+        pi.setQuantity(quantity);
+        return pi;
+    }
+
+    private static RecipeIngredient recipe(double quantity, String unit) {
+        RecipeIngredient ri = new RecipeIngredient();
+        ri.setUnit(unit);
+        ri.setQuantity(quantity);
+        return ri;
+    }
+}